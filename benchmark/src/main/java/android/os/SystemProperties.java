@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package android.os;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * JVM replacement of the native-backed system properties of android-all, it's earlier on the
+ * benchmark classpath so that {@link Build} can be initialized without a device.<br>
+ * Every property is unset except the SDK level.
+ */
+@SuppressWarnings("unused")
+public final class SystemProperties {
+
+    private static final Map<String, String> PROPERTIES = Collections.singletonMap("ro.build.version.sdk", "27");
+
+    private SystemProperties() {
+        throw new AssertionError();
+    }
+
+    public static String get(final String key) {
+        return get(key, "");
+    }
+
+    public static String get(final String key, final String def) {
+        final String value = PROPERTIES.get(key);
+        return value == null ? def : value;
+    }
+
+    public static int getInt(final String key, final int def) {
+        final String value = PROPERTIES.get(key);
+        return value == null ? def : Integer.parseInt(value);
+    }
+
+    public static long getLong(final String key, final long def) {
+        final String value = PROPERTIES.get(key);
+        return value == null ? def : Long.parseLong(value);
+    }
+
+    public static boolean getBoolean(final String key, final boolean def) {
+        final String value = PROPERTIES.get(key);
+        return value == null ? def : Boolean.parseBoolean(value);
+    }
+}
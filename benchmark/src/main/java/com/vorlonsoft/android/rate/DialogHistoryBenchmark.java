@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * Reads and increments of the 365-day period dialog launch times.<br>
+ * {@link PreferenceHelper#increment365DayPeriodDialogLaunchTimes(android.content.Context)} is the
+ * {@link RateState} increment plus a hand-off to the write-behind writer, whose thread needs a Looper,
+ * so the increment is measured on the state.
+ */
+@State(Scope.Benchmark)
+public class DialogHistoryBenchmark {
+
+    /**
+     * Number of days with dialog impressions in the 365-day history
+     */
+    @Param({"1", "100", "365"})
+    public int historyDays;
+
+    private FakeContext context;
+
+    private RateState state;
+
+    private long currentTime;
+
+    @Setup
+    public void setUp() {
+        context = new FakeContext();
+        state = PreferenceHelper.getState(context);
+        currentTime = System.currentTimeMillis();
+        for (int day = historyDays - 1; day >= 0; day--) {
+            state.increment365DayPeriodDialogLaunchTimes(currentTime - (day * DAY_IN_MILLIS));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.deleteFiles();
+    }
+
+    @Benchmark
+    public short get365DayPeriodDialogLaunchTimes() {
+        return PreferenceHelper.get365DayPeriodDialogLaunchTimes(context);
+    }
+
+    @Benchmark
+    public String increment365DayPeriodDialogLaunchTimes() {
+        return state.increment365DayPeriodDialogLaunchTimes(currentTime);
+    }
+}
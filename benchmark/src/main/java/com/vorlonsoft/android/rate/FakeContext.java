@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * JVM application context: in-memory {@link SharedPreferences}, a temporary files directory and a
+ * {@link PackageManager} that knows only the installed packages given to the constructor.
+ */
+final class FakeContext extends ContextWrapper {
+
+    private static final String PACKAGE_NAME = "com.vorlonsoft.android.rate.benchmark";
+
+    private final Map<String, SharedPreferences> preferences = new HashMap<>();
+
+    private final PackageManager packageManager;
+
+    private final File filesDir;
+
+    FakeContext(final String... installedPackages) {
+        super(null);
+        final Set<String> packages = new HashSet<>(Arrays.asList(installedPackages));
+        // stubOnly: invocations aren't recorded, so the fake doesn't allocate per lookup
+        packageManager = mock(PackageManager.class, withSettings().stubOnly());
+        try {
+            doAnswer(new Answer<ApplicationInfo>() {
+                @Override
+                public ApplicationInfo answer(final InvocationOnMock invocation) throws PackageManager.NameNotFoundException {
+                    final String packageName = invocation.getArgument(0);
+                    if (!packages.contains(packageName)) {
+                        throw new PackageManager.NameNotFoundException(packageName);
+                    }
+                    final ApplicationInfo applicationInfo = new ApplicationInfo();
+                    applicationInfo.packageName = packageName;
+                    return applicationInfo;
+                }
+            }).when(packageManager).getApplicationInfo(anyString(), anyInt());
+            filesDir = Files.createTempDirectory("androidrate-benchmark").toFile();
+        } catch (PackageManager.NameNotFoundException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes the files directory and everything the library wrote in it.
+     */
+    void deleteFiles() {
+        final File[] files = filesDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        filesDir.delete();
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public String getPackageName() {
+        return PACKAGE_NAME;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(final String name, final int mode) {
+        SharedPreferences sharedPreferences = preferences.get(name);
+        if (sharedPreferences == null) {
+            sharedPreferences = new InMemorySharedPreferences();
+            preferences.put(name, sharedPreferences);
+        }
+        return sharedPreferences;
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return packageManager;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    /**
+     * Package broadcasts never come, so the receiver isn't kept.
+     */
+    @Override
+    public Intent registerReceiver(final BroadcastReceiver receiver, final IntentFilter filter) {
+        return null;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * {@link SharedPreferences} kept in a map, commits are immediate and listeners are notified
+ * synchronously on the committing thread.
+ */
+final class InMemorySharedPreferences implements SharedPreferences {
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    private final Set<OnSharedPreferenceChangeListener> listeners = new CopyOnWriteArraySet<>();
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T get(final String key, final T defValue) {
+        final Object value = values.get(key);
+        return value == null ? defValue : (T) value;
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Override
+    public String getString(final String key, final String defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public Set<String> getStringSet(final String key, final Set<String> defValues) {
+        return get(key, defValues);
+    }
+
+    @Override
+    public int getInt(final String key, final int defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public long getLong(final String key, final long defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public float getFloat(final String key, final float defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(final String key, final boolean defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public synchronized boolean contains(final String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new InMemoryEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private final class InMemoryEditor implements Editor {
+
+        private final Map<String, Object> modified = new HashMap<>();
+
+        private final Set<String> removed = new HashSet<>();
+
+        private boolean isClear = false;
+
+        private Editor put(final String key, final Object value) {
+            modified.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putString(final String key, final String value) {
+            return value == null ? remove(key) : put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(final String key, final Set<String> values) {
+            return values == null ? remove(key) : put(key, new HashSet<>(values));
+        }
+
+        @Override
+        public Editor putInt(final String key, final int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(final String key, final long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(final String key, final float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(final String key, final boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(final String key) {
+            modified.remove(key);
+            removed.add(key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            isClear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            synchronized (InMemorySharedPreferences.this) {
+                if (isClear) {
+                    values.clear();
+                }
+                values.keySet().removeAll(removed);
+                values.putAll(modified);
+            }
+            if (!listeners.isEmpty()) {
+                final Set<String> changedKeys = new HashSet<>(removed);
+                changedKeys.addAll(modified.keySet());
+                for (String key : changedKeys) {
+                    for (OnSharedPreferenceChangeListener listener : listeners) {
+                        listener.onSharedPreferenceChanged(InMemorySharedPreferences.this, key);
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            commit();
+        }
+    }
+}
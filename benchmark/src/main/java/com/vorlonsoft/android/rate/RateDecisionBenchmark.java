@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * {@link AppRate#shouldShowRateDialog()} with every built-in condition enabled and met, so the
+ * whole pipeline runs. AppRate and its state are per-process, each trial runs in its own fork.
+ */
+@State(Scope.Benchmark)
+public class RateDecisionBenchmark {
+
+    /**
+     * Number of days with dialog impressions in the 365-day history
+     */
+    @Param({"1", "100", "365"})
+    public int historyDays;
+
+    /**
+     * Number of custom events with a minimum count
+     */
+    @Param({"0", "1", "10"})
+    public int eventsNumber;
+
+    private FakeContext context;
+
+    private AppRate appRate;
+
+    @Setup
+    public void setUp() {
+        context = new FakeContext();
+        appRate = AppRate.with(context)
+                .setInstallDays((byte) 0)
+                .setLaunchTimes((byte) 0)
+                .setRemindInterval((byte) 0)
+                .setRemindLaunchTimes((byte) 1)
+                .set365DayPeriodMaxNumberDialogLaunchTimes((short) (Short.MAX_VALUE - 1));
+        final RateState state = PreferenceHelper.getState(context);
+        final long currentTime = System.currentTimeMillis();
+        for (int day = historyDays - 1; day >= 0; day--) {
+            state.increment365DayPeriodDialogLaunchTimes(currentTime - (day * DAY_IN_MILLIS));
+        }
+        for (int i = 0; i < eventsNumber; i++) {
+            final String eventName = "benchmark_event_" + i;
+            appRate.setMinimumEventCount(eventName, (short) 1);
+            state.getCustomEventsCounts().getCounter(eventName).set(1);
+        }
+        if (!appRate.shouldShowRateDialog()) {
+            throw new IllegalStateException("The benchmark must evaluate every condition");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.deleteFiles();
+    }
+
+    @Benchmark
+    public boolean shouldShowRateDialog() {
+        return appRate.shouldShowRateDialog();
+    }
+}
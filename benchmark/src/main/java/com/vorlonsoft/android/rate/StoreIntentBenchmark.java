@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.Intent;
+import android.net.Uri;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Store uri and store intents creation. The installed packages are memoized by {@link PackageIndex}
+ * after the first invocation, as on a device between two package broadcasts.
+ */
+@State(Scope.Benchmark)
+public class StoreIntentBenchmark {
+
+    private static final String PACKAGE_NAME = "com.vorlonsoft.android.rate.sample";
+
+    /**
+     * {@link StoreType}: 0 - AMAZON, 4 - CHINESESTORES, 5 - GOOGLEPLAY, 7 - SAMSUNG
+     */
+    @Param({"0", "4", "5", "7"})
+    public int appStore;
+
+    private FakeContext context;
+
+    @Setup
+    public void setUp() {
+        context = new FakeContext("com.amazon.venezia", "com.android.vending", "com.huawei.appmarket",
+                "com.sec.android.app.samsungapps", "com.tencent.android.qqdownloader", "com.xiaomi.market");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.deleteFiles();
+    }
+
+    @Benchmark
+    public Uri getStoreUri() {
+        return UriHelper.getStoreUri(appStore, PACKAGE_NAME);
+    }
+
+    @Benchmark
+    public Intent[] createIntentsForStore() {
+        return IntentHelper.createIntentsForStore(context, appStore, PACKAGE_NAME);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Unit test for {@link com.vorlonsoft.android.rate.EventCountStore}
+ */
+public class EventCountStoreTest extends AndroidTestCase {
+
+    private static final String FILE_NAME = "androidrate_event_count_store_test";
+
+    private static final int EVENTS_NUMBER = 100;
+
+    private EventCountStore openStore(final boolean isMultiProcess) {
+        return new EventCountStore(getContext(), FILE_NAME, isMultiProcess);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final File file = new File(getContext().getFilesDir(), FILE_NAME);
+        if (file.exists()) {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testCountsSurviveReopening() {
+        final EventCountStore store = openStore(false);
+        store.add("event", 3);
+        store.increment("event");
+        store.set("set_event", 7);
+        store.flush();
+        final EventCountStore reopenedStore = openStore(false);
+        assertEquals(4, reopenedStore.get("event"));
+        assertEquals(7, reopenedStore.get("set_event"));
+        assertEquals(0, reopenedStore.get("unknown_event"));
+    }
+
+    public void testFullSlotTableGrows() {
+        final EventCountStore store = openStore(false);
+        // more events than the initial 32 slots, with names sharing long prefixes
+        for (int i = 0; i < EVENTS_NUMBER; i++) {
+            store.add("event_" + i, i + 1);
+        }
+        store.flush();
+        final EventCountStore reopenedStore = openStore(false);
+        for (int i = 0; i < EVENTS_NUMBER; i++) {
+            assertEquals(i + 1, reopenedStore.get("event_" + i));
+        }
+    }
+
+    public void testClearResetsEveryEvent() {
+        final EventCountStore store = openStore(false);
+        store.add("cleared_event", 5);
+        store.add("recounted_event", 5);
+        store.flush();
+        store.clear();
+        assertEquals(0, store.get("cleared_event"));
+        store.increment("recounted_event");
+        store.flush();
+        final EventCountStore reopenedStore = openStore(false);
+        assertEquals(0, reopenedStore.get("cleared_event"));
+        assertEquals(1, reopenedStore.get("recounted_event"));
+    }
+
+    public void testTransactionIsWrittenAtOnce() {
+        final EventCountStore store = openStore(false);
+        store.add("cleared_event", 5);
+        store.add("added_event", 5);
+        store.flush();
+        final Map<String, RateTransaction.EventChange> changes = new LinkedHashMap<>();
+        final RateTransaction.EventChange addition = new RateTransaction.EventChange();
+        addition.value = 2;
+        changes.put("added_event", addition);
+        final RateTransaction.EventChange setting = new RateTransaction.EventChange();
+        setting.isSet = true;
+        setting.value = 4;
+        changes.put("set_event", setting);
+        store.apply(true, changes, new HashMap<String, Object>());
+        // no flush: the changes are in the mapping as soon as apply() returns
+        final EventCountStore reopenedStore = openStore(false);
+        assertEquals(0, reopenedStore.get("cleared_event"));
+        assertEquals(2, reopenedStore.get("added_event"));
+        assertEquals(4, reopenedStore.get("set_event"));
+    }
+
+    public void testMultiProcessStoresAddUp() throws Throwable {
+        // two stores on the same file stand for two processes; the file locks of one JVM can't
+        // overlap, so everything runs on the worker thread that also runs the scheduled flushes
+        final Throwable[] failure = new Throwable[1];
+        final CountDownLatch doneSignal = new CountDownLatch(1);
+        Utils.getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final EventCountStore firstStore = openStore(true);
+                    final EventCountStore secondStore = openStore(true);
+                    firstStore.add("shared_event", 2);
+                    secondStore.add("shared_event", 3);
+                    firstStore.flush();
+                    secondStore.flush();
+                    assertEquals(5, firstStore.get("shared_event"));
+                    assertEquals(5, secondStore.get("shared_event"));
+                    secondStore.set("shared_event", 1);
+                    secondStore.flush();
+                    firstStore.increment("shared_event");
+                    firstStore.flush();
+                    assertEquals(2, secondStore.get("shared_event"));
+                    firstStore.clear();
+                    assertEquals(0, secondStore.get("shared_event"));
+                } catch (Throwable t) {
+                    failure[0] = t;
+                } finally {
+                    doneSignal.countDown();
+                }
+            }
+        });
+        doneSignal.await();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Unit test for {@link com.vorlonsoft.android.rate.PreferenceHelper}
+ */
+public class PreferenceHelperTest extends AndroidTestCase {
+
+    private static final int THREADS_NUMBER = 16;
+
+    private static final int INCREMENTS_PER_THREAD = 1000;
+
+    private static final String EVENT_NAME = "concurrency_test_event";
+
+    private static void hammer(final Runnable increment) throws InterruptedException {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final CountDownLatch doneSignal = new CountDownLatch(THREADS_NUMBER);
+        for (int i = 0; i < THREADS_NUMBER; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                        for (int j = 0; j < INCREMENTS_PER_THREAD; j++) {
+                            increment.run();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        doneSignal.countDown();
+                    }
+                }
+            }).start();
+        }
+        startSignal.countDown();
+        doneSignal.await();
+    }
+
+    /**
+     * Waits for the tasks already posted to the AndroidRate worker thread, e.g. the event count flushes.
+     */
+    private static void awaitBackgroundTasks() throws InterruptedException {
+        final CountDownLatch doneSignal = new CountDownLatch(1);
+        Utils.getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                doneSignal.countDown();
+            }
+        });
+        doneSignal.await();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // every test starts without a storage, in the default single-process mode
+        PreferenceHelper.resetStorages();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        awaitBackgroundTasks();
+        PreferenceHelper.resetStorages();
+        super.tearDown();
+    }
+
+    public void testConcurrentIncrementLaunchTimes() throws InterruptedException {
+        final Context context = getContext();
+        PreferenceHelper.clearSharedPreferences(context);
+        hammer(new Runnable() {
+            @Override
+            public void run() {
+                PreferenceHelper.incrementLaunchTimes(context);
+            }
+        });
+        assertEquals(THREADS_NUMBER * INCREMENTS_PER_THREAD, PreferenceHelper.getLaunchTimes(context));
+    }
+
+    public void testConcurrentIncrementCustomEventCount() throws InterruptedException {
+        final Context context = getContext();
+        PreferenceHelper.clearSharedPreferences(context);
+        hammer(new Runnable() {
+            @Override
+            public void run() {
+                PreferenceHelper.incrementCustomEventCount(context, EVENT_NAME);
+            }
+        });
+        assertEquals(THREADS_NUMBER * INCREMENTS_PER_THREAD, PreferenceHelper.getCustomEventCount(context, EVENT_NAME));
+    }
+
+    public void testConcurrentIncrementMultiProcessCustomEventCount() throws InterruptedException {
+        final Context context = getContext();
+        assertTrue("the mode can be set before the storage is created",
+                PreferenceHelper.setMultiProcessEventCounts(true));
+        PreferenceHelper.clearSharedPreferences(context);
+        hammer(new Runnable() {
+            @Override
+            public void run() {
+                PreferenceHelper.incrementCustomEventCount(context, EVENT_NAME);
+            }
+        });
+        // the increments are merged into the mapped file by the flushes on the worker thread
+        awaitBackgroundTasks();
+        assertEquals(THREADS_NUMBER * INCREMENTS_PER_THREAD, PreferenceHelper.getCustomEventCount(context, EVENT_NAME));
+        assertTrue("the storage keeps counting in multi-process mode",
+                PreferenceHelper.setMultiProcessEventCounts(true));
+    }
+
+    public void testMultiProcessEventCountsModeIsFixedOnceInUse() {
+        PreferenceHelper.getStorage(getContext());
+        assertFalse("the storage created in single-process mode can't switch to multi-process mode",
+                PreferenceHelper.setMultiProcessEventCounts(true));
+        assertTrue("the storage created in single-process mode stays in it",
+                PreferenceHelper.setMultiProcessEventCounts(false));
+    }
+}
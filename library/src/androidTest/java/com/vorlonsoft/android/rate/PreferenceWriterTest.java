@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.test.AndroidTestCase;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit test for {@link com.vorlonsoft.android.rate.PreferenceWriter}
+ */
+public class PreferenceWriterTest extends AndroidTestCase {
+
+    private static final String PREFS_FILE = "androidrate_writer_test";
+
+    private SharedPreferences preferences;
+
+    /**
+     * Fails the first {@code failuresNumber} commits without writing anything
+     */
+    private static final class FailingSharedPreferences implements SharedPreferences {
+
+        private final SharedPreferences preferences;
+
+        private int failuresNumber;
+
+        FailingSharedPreferences(final SharedPreferences preferences, final int failuresNumber) {
+            this.preferences = preferences;
+            this.failuresNumber = failuresNumber;
+        }
+
+        @Override
+        public Map<String, ?> getAll() {
+            return preferences.getAll();
+        }
+
+        @Override
+        public String getString(final String key, final String defValue) {
+            return preferences.getString(key, defValue);
+        }
+
+        @Override
+        public Set<String> getStringSet(final String key, final Set<String> defValues) {
+            return preferences.getStringSet(key, defValues);
+        }
+
+        @Override
+        public int getInt(final String key, final int defValue) {
+            return preferences.getInt(key, defValue);
+        }
+
+        @Override
+        public long getLong(final String key, final long defValue) {
+            return preferences.getLong(key, defValue);
+        }
+
+        @Override
+        public float getFloat(final String key, final float defValue) {
+            return preferences.getFloat(key, defValue);
+        }
+
+        @Override
+        public boolean getBoolean(final String key, final boolean defValue) {
+            return preferences.getBoolean(key, defValue);
+        }
+
+        @Override
+        public boolean contains(final String key) {
+            return preferences.contains(key);
+        }
+
+        @Override
+        public Editor edit() {
+            final Editor editor = preferences.edit();
+            return new Editor() {
+                @Override
+                public Editor putString(final String key, final String value) {
+                    editor.putString(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(final String key, final Set<String> values) {
+                    editor.putStringSet(key, values);
+                    return this;
+                }
+
+                @Override
+                public Editor putInt(final String key, final int value) {
+                    editor.putInt(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putLong(final String key, final long value) {
+                    editor.putLong(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putFloat(final String key, final float value) {
+                    editor.putFloat(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putBoolean(final String key, final boolean value) {
+                    editor.putBoolean(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor remove(final String key) {
+                    editor.remove(key);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    editor.clear();
+                    return this;
+                }
+
+                @Override
+                public boolean commit() {
+                    synchronized (FailingSharedPreferences.this) {
+                        if (failuresNumber > 0) {
+                            failuresNumber--;
+                            return false;
+                        }
+                    }
+                    return editor.commit();
+                }
+
+                @Override
+                public void apply() {
+                    commit();
+                }
+            };
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+            preferences.registerOnSharedPreferenceChangeListener(listener);
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+            preferences.unregisterOnSharedPreferenceChangeListener(listener);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        preferences = getContext().getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE);
+        preferences.edit().clear().commit();
+    }
+
+    public void testPendingMutationsAreCoalesced() {
+        final PreferenceWriter writer = new PreferenceWriter(getContext(), preferences);
+        writer.putInt("launch_times", 1);
+        writer.putInt("launch_times", 2);
+        writer.putString("name", "first");
+        writer.putString("name", "second");
+        assertFalse(preferences.contains("launch_times"));
+        assertTrue(writer.commit());
+        assertEquals(2, preferences.getInt("launch_times", 0));
+        assertEquals("second", preferences.getString("name", null));
+    }
+
+    public void testRemovalsAreWritten() {
+        preferences.edit().putInt("removed", 1).putString("null_string", "value").commit();
+        final PreferenceWriter writer = new PreferenceWriter(getContext(), preferences);
+        writer.putInt("put_then_removed", 1);
+        writer.remove("put_then_removed");
+        writer.remove("removed");
+        writer.putString("null_string", null);
+        assertTrue(writer.commit());
+        assertFalse(preferences.contains("put_then_removed"));
+        assertFalse(preferences.contains("removed"));
+        assertFalse(preferences.contains("null_string"));
+    }
+
+    public void testClearDropsOlderMutationsOnly() {
+        preferences.edit().putInt("stored", 1).commit();
+        final PreferenceWriter writer = new PreferenceWriter(getContext(), preferences);
+        writer.putInt("before_clear", 1);
+        writer.clear();
+        writer.putInt("after_clear", 2);
+        assertTrue(writer.commit());
+        assertFalse(preferences.contains("stored"));
+        assertFalse(preferences.contains("before_clear"));
+        assertEquals(2, preferences.getInt("after_clear", 0));
+    }
+
+    public void testPendingMutationsAreRead() {
+        preferences.edit().putInt("removed", 1).putInt("stored", 1).commit();
+        final PreferenceWriter writer = new PreferenceWriter(getContext(), preferences);
+        writer.putInt("put", 2);
+        writer.remove("removed");
+        final Map<String, ?> values = writer.getAll();
+        assertEquals(2, values.get("put"));
+        assertFalse(values.containsKey("removed"));
+        assertEquals(1, values.get("stored"));
+        // the view clears the keys that are still pending too
+        final NamespacedKeyValueStore namespacedStore = new NamespacedKeyValueStore(writer, "view_");
+        namespacedStore.putInt("pending", 3);
+        namespacedStore.clear();
+        assertTrue(namespacedStore.getAll().isEmpty());
+        assertTrue(writer.commit());
+        assertFalse(preferences.contains("view_pending"));
+    }
+
+    public void testFailedCommitIsRequeued() {
+        final PreferenceWriter writer = new PreferenceWriter(getContext(), new FailingSharedPreferences(preferences, 1));
+        // the puts only schedule a delayed flush, so the explicit commits below are the ones that run
+        writer.putInt("overwritten", 1);
+        writer.putInt("kept", 1);
+        assertFalse(writer.commit());
+        assertFalse(preferences.contains("kept"));
+        writer.putInt("overwritten", 2);
+        assertTrue(writer.commit());
+        assertEquals(2, preferences.getInt("overwritten", 0));
+        assertEquals(1, preferences.getInt("kept", 0));
+    }
+}
@@ -8,99 +8,128 @@ package com.vorlonsoft.android.rate;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.app.Application;
 import android.app.Dialog;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
-import android.util.ArrayMap;
 import android.util.Log;
 import android.view.View;
 
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import static com.vorlonsoft.android.rate.PreferenceHelper.get365DayPeriodDialogLaunchTimes;
-import static com.vorlonsoft.android.rate.PreferenceHelper.getCustomEventCount;
-import static com.vorlonsoft.android.rate.PreferenceHelper.getDialogFirstLaunchTime;
-import static com.vorlonsoft.android.rate.PreferenceHelper.getInstallDate;
-import static com.vorlonsoft.android.rate.PreferenceHelper.getIsAgreeShowDialog;
-import static com.vorlonsoft.android.rate.PreferenceHelper.getLaunchTimes;
-import static com.vorlonsoft.android.rate.PreferenceHelper.getRemindInterval;
-import static com.vorlonsoft.android.rate.PreferenceHelper.increment365DayPeriodDialogLaunchTimes;
-import static com.vorlonsoft.android.rate.PreferenceHelper.isFirstLaunch;
-import static com.vorlonsoft.android.rate.PreferenceHelper.setCustomEventCount;
-import static com.vorlonsoft.android.rate.PreferenceHelper.setDialogFirstLaunchTime;
-import static com.vorlonsoft.android.rate.PreferenceHelper.setFirstLaunchSharedPreferences;
-import static com.vorlonsoft.android.rate.PreferenceHelper.setIsAgreeShowDialog;
-import static com.vorlonsoft.android.rate.StoreType.AMAZON;
-import static com.vorlonsoft.android.rate.StoreType.APPLE;
-import static com.vorlonsoft.android.rate.StoreType.BLACKBERRY;
+import static com.vorlonsoft.android.rate.PreferenceHelper.deferUntilStateLoaded;
+import static com.vorlonsoft.android.rate.PreferenceHelper.isStatePreloading;
+import static com.vorlonsoft.android.rate.PreferenceHelper.preloadState;
 import static com.vorlonsoft.android.rate.StoreType.INTENT;
 import static com.vorlonsoft.android.rate.StoreType.OTHER;
-import static com.vorlonsoft.android.rate.StoreType.YANDEX;
-import static com.vorlonsoft.android.rate.Utils.DAY_IN_MILLIS;
+import static com.vorlonsoft.android.rate.Utils.ELAPSED_REALTIME_CLOCK;
 import static com.vorlonsoft.android.rate.Utils.TAG;
+import static com.vorlonsoft.android.rate.Utils.getMetricsListener;
 
 public final class AppRate {
 
     @SuppressLint("StaticFieldLeak")
     private static volatile AppRate singleton = null;
-    private final Map<String, Short> customEventsCounts;
+    private static final Map<String, AppRate> namedInstances = new HashMap<>();
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
     private final Context context;
-    private final DialogOptions dialogOptions = new DialogOptions();
+    private final String name;
+    private final DialogOptions dialogOptions;
     private final StoreOptions storeOptions = new StoreOptions();
     private boolean isDebug = false;
-    private byte installDate = (byte) 10;
-    private byte appLaunchTimes = (byte) 10;
-    private byte remindInterval = (byte) 1;
-    private byte remindLaunchTimes = (byte) 1;
-    /**
-     * Short.MAX_VALUE - unlimited occurrences of the display of the dialog within a 365-day period
-     */
-    private short dialogLaunchTimes = Short.MAX_VALUE;
     private DialogManager.Factory dialogManagerFactory = new DefaultDialogManager.Factory();
-
-    {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            customEventsCounts = new ArrayMap<>();
-        } else {
-            customEventsCounts = new HashMap<>();
+    private final RateEngine engine = new RateEngine();
+    private DialogPrewarmer dialogPrewarmer = null;
+    private EligibilityNotifier eligibilityNotifier = null;
+    private final Runnable monitorTask = new Runnable() {
+        @Override
+        public void run() {
+            monitor();
         }
-    }
+    };
 
-    private AppRate(Context context) {
+    private AppRate(Context context, String name) {
         this.context = context.getApplicationContext();
+        this.name = name;
+        this.dialogOptions = new DialogOptions(name);
     }
 
     public static AppRate with(Context context) {
         if (singleton == null) {
             synchronized (AppRate.class) {
                 if (singleton == null) {
-                    singleton = new AppRate(context);
+                    singleton = new AppRate(context, null);
                 }
             }
         }
         return singleton;
     }
 
-    @SuppressWarnings("UnusedReturnValue")
-    public static boolean showRateDialogIfMeetsConditions(Activity activity) {
-        boolean isMeetsConditions = (singleton.isDebug() || singleton.shouldShowRateDialog());
-        if (isMeetsConditions) {
-            singleton.showRateDialog(activity);
+    /**
+     * Returns the AppRate instance named {@code name}, e.g. one per account or per product area.
+     * It's configured independently and keeps its own state, in the same preferences file and
+     * through the same background writer as the default instance.
+     *
+     * @param name letters, digits, '.', '_' and '-' only
+     */
+    @SuppressWarnings("unused")
+    public static AppRate with(Context context, @NonNull final String name) {
+        if ((name == null) || !NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("with(Context context, String name): 'name' must contain letters, digits, '.', '_' and '-' only");
+        }
+        synchronized (AppRate.class) {
+            AppRate appRate = namedInstances.get(name);
+            if (appRate == null) {
+                appRate = new AppRate(context, name);
+                namedInstances.put(name, appRate);
+            }
+            return appRate;
         }
-        return isMeetsConditions;
     }
 
-    private static boolean isOverDate(long targetDate, byte threshold) {
-        return new Date().getTime() - targetDate >= threshold * DAY_IN_MILLIS;
+    /**
+     * @return the name of this instance, null for the default one
+     */
+    @SuppressWarnings("unused")
+    @Nullable
+    public String getName() {
+        return name;
     }
 
-    private boolean isBelow365DayPeriodMaxNumberDialogLaunchTimes() {
-        return ((dialogLaunchTimes == Short.MAX_VALUE) || (get365DayPeriodDialogLaunchTimes(context) < dialogLaunchTimes));
+    private RateStorage getStorage() {
+        return PreferenceHelper.getStorage(context, name);
+    }
+
+    /**
+     * Shows the rate dialog of the default instance if it meets the conditions, see
+     * {@link #showRateDialogIfNeeded(Activity)}.
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    public static boolean showRateDialogIfMeetsConditions(Activity activity) {
+        return singleton.showRateDialogIfNeeded(activity);
+    }
+
+    /**
+     * Shows the rate dialog of this instance if it meets the conditions, e.g. for an instance
+     * returned by {@link #with(Context, String)}.<br>
+     * Returns false without blocking while a preload started by {@link #setPreload(boolean)} is running.
+     */
+    @SuppressWarnings({"UnusedReturnValue", "WeakerAccess"})
+    public boolean showRateDialogIfNeeded(Activity activity) {
+        if (isStatePreloading(getStorage())) {
+            return false;
+        }
+        boolean isMeetsConditions = (isDebug() || shouldShowRateDialog());
+        if (isMeetsConditions) {
+            showRateDialog(activity);
+        }
+        return isMeetsConditions;
     }
 
     /**
@@ -108,33 +137,70 @@ public final class AppRate {
      */
     @SuppressWarnings({"unused"})
     public AppRate set365DayPeriodMaxNumberDialogLaunchTimes(short dialogLaunchTimes) {
-        this.dialogLaunchTimes = dialogLaunchTimes;
+        engine.set365DayPeriodMaxNumberDialogLaunchTimes(dialogLaunchTimes);
         return this;
     }
 
     public AppRate setLaunchTimes(@SuppressWarnings("SameParameterValue") byte appLaunchTimes) {
-        this.appLaunchTimes = appLaunchTimes;
+        engine.setLaunchTimes(appLaunchTimes);
+        return this;
+    }
+
+    @SuppressWarnings("unused")
+    public AppRate setLaunchTimes(int appLaunchTimes) {
+        engine.setLaunchTimes(appLaunchTimes);
         return this;
     }
 
     public AppRate setInstallDays(@SuppressWarnings("SameParameterValue") byte installDate) {
-        this.installDate = installDate;
+        engine.setInstallDays(installDate);
         return this;
     }
 
     public AppRate setRemindInterval(@SuppressWarnings("SameParameterValue") byte remindInterval) {
-        this.remindInterval = remindInterval;
+        engine.setRemindInterval(remindInterval);
         return this;
     }
 
     @SuppressWarnings("unused")
     public AppRate setMinimumEventCount(String eventName, short minimumCount) {
-        this.customEventsCounts.put(eventName, minimumCount);
+        engine.setMinimumEventCount(eventName, minimumCount);
+        return this;
+    }
+
+    /**
+     * The event counts saturate at Integer.MAX_VALUE, they never wrap around.
+     */
+    @SuppressWarnings("unused")
+    public AppRate setMinimumEventCount(String eventName, int minimumCount) {
+        engine.setMinimumEventCount(eventName, minimumCount);
+        return this;
+    }
+
+    /**
+     * Requires at least {@code minimumCount} launches within the last {@code days} days.
+     * The launches are counted in the window from the first call on.
+     */
+    @SuppressWarnings("unused")
+    public AppRate setMinimumLaunchTimesInWindow(int minimumCount, short days) {
+        engine.setMinimumLaunchTimesInWindow(minimumCount, days);
+        getStorage().trackLaunchTimesInWindow(days);
+        return this;
+    }
+
+    /**
+     * Requires at least {@code minimumCount} {@code eventName} events within the last {@code days} days.
+     * The events are counted in the window from the first call on.
+     */
+    @SuppressWarnings("unused")
+    public AppRate setMinimumEventCountInWindow(String eventName, int minimumCount, short days) {
+        engine.setMinimumEventCountInWindow(eventName, minimumCount, days);
+        getStorage().trackEventCountInWindow(eventName, days);
         return this;
     }
 
     public AppRate setRemindLaunchTimes(@SuppressWarnings("SameParameterValue") byte remindLaunchTimes) {
-        this.remindLaunchTimes = remindLaunchTimes;
+        engine.setRemindLaunchTimes(remindLaunchTimes);
         return this;
     }
 
@@ -157,19 +223,19 @@ public final class AppRate {
 
     @SuppressWarnings("unused")
     public AppRate clearAgreeShowDialog() {
-        setIsAgreeShowDialog(context, true);
+        getStorage().setAgreeShowDialog(true);
         return this;
     }
 
     @SuppressWarnings("unused")
     public AppRate clearSettingsParam() {
-        PreferenceHelper.clearSharedPreferences(context);
+        getStorage().clear();
         return this;
     }
 
     @SuppressWarnings("unused")
     public AppRate setAgreeShowDialog(boolean isAgree) {
-        setIsAgreeShowDialog(context, isAgree);
+        getStorage().setAgreeShowDialog(isAgree);
         return this;
     }
 
@@ -250,20 +316,73 @@ public final class AppRate {
     }
 
     public AppRate setStoreType(@StoreType.StoreWithoutApplicationId final int storeType) {
-        if ((storeType == APPLE) || (storeType == BLACKBERRY)) {
+        final StoreDescriptor store = StoreDescriptor.get(storeType);
+        if (store == null) {
+            throw new IllegalArgumentException("StoreType must be one of: AMAZON, APPLE, BAZAAR, BLACKBERRY, CHINESESTORES, GOOGLEPLAY, MI, SAMSUNG, SLIDEME, TENCENT, YANDEX or a store type registered with registerStore(int, StoreDescriptor), see setRegisteredStoreType(int)");
+        } else if (store.isApplicationIdRequired()) {
             throw new IllegalArgumentException("For StoreType.APPLE/StoreType.BLACKBERRY you must use setStoreType(StoreType.APPLE/StoreType.BLACKBERRY, long applicationId)");
-        } else if ((storeType < AMAZON) || (storeType > YANDEX)) {
-            throw new IllegalArgumentException("StoreType must be one of: AMAZON, APPLE, BAZAAR, BLACKBERRY, CHINESESTORES, GOOGLEPLAY, MI, SAMSUNG, SLIDEME, TENCENT, YANDEX");
         }
         return setStoreType(storeType, null, null);
     }
 
     @SuppressWarnings("unused")
     public AppRate setStoreType(@StoreType.StoreWithApplicationId final int storeType, final long applicationId) {
-        if ((storeType < AMAZON) || (storeType > YANDEX)) {
-            throw new IllegalArgumentException("StoreType must be one of: AMAZON, APPLE, BAZAAR, BLACKBERRY, CHINESESTORES, GOOGLEPLAY, MI, SAMSUNG, SLIDEME, TENCENT, YANDEX");
+        final StoreDescriptor store = StoreDescriptor.get(storeType);
+        if (store == null) {
+            throw new IllegalArgumentException("StoreType must be one of: AMAZON, APPLE, BAZAAR, BLACKBERRY, CHINESESTORES, GOOGLEPLAY, MI, SAMSUNG, SLIDEME, TENCENT, YANDEX or a store type registered with registerStore(int, StoreDescriptor), see setRegisteredStoreType(int)");
         }
-        return ((storeType != APPLE) && (storeType != BLACKBERRY)) ? setStoreType(storeType, null, null) : setStoreType(storeType, new String[]{String.valueOf(applicationId)}, null);
+        return store.isApplicationIdRequired() ? setStoreType(storeType, new String[]{String.valueOf(applicationId)}, null) : setStoreType(storeType, null, null);
+    }
+
+    /**
+     * Sets a store added by {@link #registerStore(int, StoreDescriptor)}, the IntDef of
+     * {@link #setStoreType(int)} doesn't accept the registered store types.
+     *
+     * @param storeType a store type registered with {@link #registerStore(int, StoreDescriptor)}
+     */
+    @SuppressWarnings("unused")
+    public AppRate setRegisteredStoreType(final int storeType) {
+        final StoreDescriptor store = getRegisteredStore(storeType);
+        if (store.isApplicationIdRequired()) {
+            throw new IllegalArgumentException("Store type " + storeType + " requires an application ID, use setRegisteredStoreType(int storeType, long applicationId)");
+        }
+        return setStoreType(storeType, null, null);
+    }
+
+    /**
+     * Sets a store added by {@link #registerStore(int, StoreDescriptor)} with the application ID
+     * of the app in the store, the IntDef of {@link #setStoreType(int, long)} doesn't accept the
+     * registered store types.
+     *
+     * @param storeType a store type registered with {@link #registerStore(int, StoreDescriptor)}
+     * @param applicationId the application ID, ignored if the store doesn't require one
+     */
+    @SuppressWarnings("unused")
+    public AppRate setRegisteredStoreType(final int storeType, final long applicationId) {
+        final StoreDescriptor store = getRegisteredStore(storeType);
+        return store.isApplicationIdRequired() ? setStoreType(storeType, new String[]{String.valueOf(applicationId)}, null) : setStoreType(storeType, null, null);
+    }
+
+    @NonNull
+    private static StoreDescriptor getRegisteredStore(final int storeType) {
+        final StoreDescriptor store = (storeType > OTHER) ? StoreDescriptor.get(storeType) : null;
+        if (store == null) {
+            throw new IllegalArgumentException("Store type " + storeType + " isn't registered, register it with registerStore(int, StoreDescriptor) first");
+        }
+        return store;
+    }
+
+    /**
+     * Adds a store that can then be set with {@link #setRegisteredStoreType(int)} or
+     * {@link #setRegisteredStoreType(int, long)}.<br>
+     * The store registry is process-wide, a registered store is available to every AppRate instance.
+     *
+     * @param storeType the new store type, greater than {@link StoreType#OTHER}
+     * @param store how to open the app page of the store
+     */
+    @SuppressWarnings("unused")
+    public static void registerStore(final int storeType, @NonNull final StoreDescriptor store) {
+        StoreDescriptor.register(storeType, store);
     }
 
     @SuppressWarnings({"ConstantConditions", "WeakerAccess", "unused"})
@@ -276,6 +395,7 @@ public final class AppRate {
 
     private AppRate setStoreType(final int storeType, final String[] stringParam, final Intent[] intentParaam) {
         storeOptions.setStoreType(storeType, stringParam, intentParaam);
+        StoreIntentCache.prepare(context, storeOptions);
         return this;
     }
 
@@ -294,44 +414,157 @@ public final class AppRate {
 
     @SuppressWarnings("unused")
     public AppRate incrementEventCount(String eventName) {
-        return setEventCountValue(eventName, (short) (getCustomEventCount(context, eventName) + 1));
+        getStorage().incrementCustomEventCount(eventName);
+        return this;
+    }
+
+    /**
+     * Resets the counts of all custom events to zero.
+     */
+    @SuppressWarnings("unused")
+    public AppRate clearEventCounts() {
+        getStorage().clearCustomEventCounts();
+        return this;
     }
 
     @SuppressWarnings("WeakerAccess")
     public AppRate setEventCountValue(String eventName, short countValue) {
-        setCustomEventCount(context, eventName, countValue);
+        return setEventCountValue(eventName, (int) countValue);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public AppRate setEventCountValue(String eventName, int countValue) {
+        getStorage().setCustomEventCount(eventName, countValue);
         return this;
     }
 
+    /**
+     * Returns a transaction that records event count, launch count, remind interval and agree flag
+     * changes in memory and applies them together on {@link RateTransaction#commit()}, with one write.
+     */
+    @SuppressWarnings("unused")
+    @NonNull
+    public RateTransaction edit() {
+        return getStorage().edit();
+    }
+
     @SuppressWarnings("unused")
     public AppRate setThemeResId(int themeResId) {
         dialogOptions.setThemeResId(themeResId);
         return this;
     }
 
+    /**
+     * Sets the time source of the install date, the remind interval and the dialog launch times,
+     * {@link RateClock#WALL} by default. A {@link TestRateClock} fast-forwards the app usage.
+     */
+    @SuppressWarnings("unused")
+    public AppRate setClock(@NonNull final RateClock clock) {
+        getStorage().setClock(clock);
+        return this;
+    }
+
+    /**
+     * If true, AppRate reads the wall clock once and then advances it by
+     * {@link android.os.SystemClock#elapsedRealtime()}, so changing the device date doesn't affect it.
+     */
+    @SuppressWarnings("unused")
+    public AppRate setHybridClock(final boolean isHybridClock) {
+        return setClock(isHybridClock ? new HybridRateClock(RateClock.WALL, ELAPSED_REALTIME_CLOCK) : RateClock.WALL);
+    }
+
+    /**
+     * Sets the listener of the AppRate operation timings and outcomes, null by default.
+     * While it's null nothing is measured.<br>
+     * The listener is process-wide, it receives the operations of every AppRate instance.
+     */
+    @SuppressWarnings("unused")
+    public static void setMetricsListener(@Nullable final RateMetricsListener listener) {
+        Utils.setMetricsListener(listener);
+    }
+
+    /**
+     * Adds a listener notified on the main thread when the rate dialog becomes eligible to be shown
+     * or stops being, instead of polling {@link #shouldShowRateDialog()}. The launch and event counts
+     * are re-checked after every change and the install days and remind interval when they elapse,
+     * or when an Activity resumes if the device slept through it (API 14+); conditions added by
+     * {@link #addCondition(RateCondition)} are only re-checked on those occasions.
+     * Call it on the main thread.
+     */
+    @SuppressWarnings("unused")
+    public AppRate addOnEligibilityChangedListener(@NonNull final OnEligibilityChangedListener listener) {
+        if (eligibilityNotifier == null) {
+            eligibilityNotifier = new EligibilityNotifier(context, this, getStorage(), engine);
+        }
+        eligibilityNotifier.addListener(listener);
+        return this;
+    }
+
+    /**
+     * Call it on the main thread.
+     */
+    @SuppressWarnings("unused")
+    public AppRate removeOnEligibilityChangedListener(@NonNull final OnEligibilityChangedListener listener) {
+        if (eligibilityNotifier != null) {
+            eligibilityNotifier.removeListener(listener);
+        }
+        return this;
+    }
+
     @SuppressWarnings("unused")
     public AppRate setDialogManagerFactory(DialogManager.Factory dialogManagerFactory) {
         this.dialogManagerFactory = dialogManagerFactory;
         return this;
     }
 
+    /**
+     * Counts the app launch. While a preload is running the launch is counted on the preload thread
+     * once the state is loaded, so the call never blocks on disk.
+     */
     public void monitor() {
-        if (isFirstLaunch(context)) {
-            setFirstLaunchSharedPreferences(context);
+        if (deferUntilStateLoaded(getStorage(), monitorTask)) {
+            return;
+        }
+        final RateMetricsListener metrics = getMetricsListener();
+        final long startNanos = metrics == null ? 0L : System.nanoTime();
+        final RateStorage storage = getStorage();
+        if (storage.isFirstLaunch()) {
+            storage.setFirstLaunch();
         } else {
-            PreferenceHelper.setLaunchTimes(context, (short) (getLaunchTimes(context) + 1));
+            storage.incrementLaunchTimes();
+        }
+        if (metrics != null) {
+            metrics.onMonitor(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return the rate dialog for {@code activity}, null if it can't be created
+     */
+    @Nullable
+    Dialog createDialog(@NonNull final Activity activity) {
+        final RateMetricsListener metrics = getMetricsListener();
+        final long startNanos = metrics == null ? 0L : System.nanoTime();
+        final Dialog dialog = dialogManagerFactory.createDialogManager(activity, dialogOptions, storeOptions).createDialog();
+        if (metrics != null) {
+            metrics.onDialogCreated(System.nanoTime() - startNanos, dialog != null);
         }
+        return dialog;
     }
 
     @SuppressWarnings("WeakerAccess")
     public void showRateDialog(Activity activity) {
         if (!activity.isFinishing()) {
-            Dialog dialog = dialogManagerFactory.createDialogManager(activity, dialogOptions, storeOptions).createDialog();
+            Dialog dialog = dialogPrewarmer == null ? null : dialogPrewarmer.take(activity);
+            if (dialog == null) {
+                dialog = createDialog(activity);
+            }
             if (dialog != null) {
-                if (getDialogFirstLaunchTime(context) == 0L) {
-                    setDialogFirstLaunchTime(context);
+                final RateStorage storage = getStorage();
+                if (storage.getState().getDialogFirstLaunchTime() == 0L) {
+                    storage.setDialogFirstLaunchTime();
                 }
-                increment365DayPeriodDialogLaunchTimes(context);
+                storage.increment365DayPeriodDialogLaunchTimes();
                 dialog.show();
             } else {
                 Log.w(TAG, "Failed to rate app, can't create rate dialog");
@@ -341,44 +574,84 @@ public final class AppRate {
 
     @SuppressWarnings("WeakerAccess")
     public boolean shouldShowRateDialog() {
-        return getIsAgreeShowDialog(context) &&
-                isOverLaunchTimes() &&
-                isOverRemindLaunchTimes() &&
-                isOverInstallDate() &&
-                isOverRemindDate() &&
-                isOverCustomEventsRequirements() &&
-                isBelow365DayPeriodMaxNumberDialogLaunchTimes();
+        if (isStatePreloading(getStorage())) {
+            return false;
+        }
+        final RateMetricsListener metrics = getMetricsListener();
+        final long startNanos = metrics == null ? 0L : System.nanoTime();
+        final RateStorage storage = getStorage();
+        final boolean isMeetsConditions = engine.shouldShowRateDialog(storage.getState(), storage.getClock().currentTimeMillis());
+        if (metrics != null) {
+            metrics.onShouldShowRateDialog(System.nanoTime() - startNanos, isMeetsConditions ? null : engine.getLastRejectedBy());
+        }
+        return isMeetsConditions;
     }
 
-    private boolean isOverLaunchTimes() {
-        return ((appLaunchTimes == 0) || (getLaunchTimes(context) >= appLaunchTimes));
+    /**
+     * Adds a condition that must be met to show the rate dialog, in addition to the built-in ones.<br>
+     * Conditions are evaluated cheapest and most selective first, see {@link RateCondition#getCost()}.
+     */
+    @SuppressWarnings("unused")
+    public AppRate addCondition(@NonNull final RateCondition condition) {
+        engine.addCondition(condition);
+        return this;
     }
 
-    private boolean isOverRemindLaunchTimes() {
-        return ((remindLaunchTimes == 1) || ((remindLaunchTimes != 0) && ((getLaunchTimes(context) % remindLaunchTimes) == 0)));
+    @SuppressWarnings("unused")
+    public AppRate removeCondition(@NonNull final RateCondition condition) {
+        engine.removeCondition(condition);
+        return this;
     }
 
-    private boolean isOverInstallDate() {
-        return ((installDate == 0) || isOverDate(getInstallDate(context), installDate));
+    /**
+     * Opt-in preload mode, call it first thing after {@link #with(Context)} in Application.onCreate.<br>
+     * The state of this instance is loaded on a background thread; until the load finishes
+     * {@link #shouldShowRateDialog()} and {@link #showRateDialogIfNeeded(Activity)} of this instance
+     * return false and its {@link #monitor()} is queued instead of blocking the main thread.
+     * Other instances aren't affected.
+     */
+    @SuppressWarnings("unused")
+    public AppRate setPreload(boolean isPreload) {
+        if (isPreload) {
+            preloadState(getStorage());
+        }
+        return this;
     }
 
-    private boolean isOverRemindDate() {
-        return ((remindInterval == 0) || isOverDate(getRemindInterval(context), remindInterval));
+    /**
+     * If true, once the rate dialog should be shown it's built for the resumed Activity while the
+     * main thread is idle, so {@link #showRateDialog(Activity)} doesn't build it. Set the dialog options first.
+     * Call it on the main thread, requires API 14.
+     */
+    @SuppressLint("ObsoleteSdkInt")
+    @SuppressWarnings("unused")
+    public AppRate setPrewarm(boolean isPrewarm) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            return this;
+        }
+        if (isPrewarm && (dialogPrewarmer == null) && (context instanceof Application)) {
+            dialogPrewarmer = new DialogPrewarmer(this, (Application) context);
+            dialogPrewarmer.start();
+        } else if (!isPrewarm && (dialogPrewarmer != null)) {
+            dialogPrewarmer.stop();
+            dialogPrewarmer = null;
+        }
+        return this;
     }
 
-    private boolean isOverCustomEventsRequirements() {
-        if (customEventsCounts.isEmpty()) {
-            return true;
-        } else {
-            Short currentCount;
-            for (Map.Entry<String, Short> eventRequirement : customEventsCounts.entrySet()) {
-                currentCount = getCustomEventCount(context, eventRequirement.getKey());
-                if (currentCount < eventRequirement.getValue()) {
-                    return false;
-                }
-            }
-            return true;
+    /**
+     * Set it to true if the app counts custom events in more than one process.
+     * Only the custom event counts are then kept consistent across processes: the launch times,
+     * the install date, the remind interval, the agree show dialog flag and the dialog launch
+     * times live in the preferences file and must still be changed by one process only.<br>
+     * Call it in every process before any other AppRate call except {@link #with(Context)}.
+     */
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    public AppRate setMultiProcessEventCounts(boolean isMultiProcess) {
+        if (!PreferenceHelper.setMultiProcessEventCounts(isMultiProcess)) {
+            Log.w(TAG, "Failed to change the multi-process mode of the event counts, the AppRate state is already in use");
         }
+        return this;
     }
 
     @SuppressWarnings({"unused", "WeakerAccess"})
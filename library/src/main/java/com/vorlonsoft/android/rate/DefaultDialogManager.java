@@ -17,23 +17,10 @@ import android.view.View;
 
 import androidx.annotation.Nullable;
 
-import static com.vorlonsoft.android.rate.IntentHelper.createIntentsForStore;
-import static com.vorlonsoft.android.rate.PreferenceHelper.setIsAgreeShowDialog;
-import static com.vorlonsoft.android.rate.PreferenceHelper.setRemindInterval;
-import static com.vorlonsoft.android.rate.StoreType.AMAZON;
-import static com.vorlonsoft.android.rate.StoreType.APPLE;
-import static com.vorlonsoft.android.rate.StoreType.BAZAAR;
-import static com.vorlonsoft.android.rate.StoreType.BLACKBERRY;
-import static com.vorlonsoft.android.rate.StoreType.CHINESESTORES;
-import static com.vorlonsoft.android.rate.StoreType.GOOGLEPLAY;
-import static com.vorlonsoft.android.rate.StoreType.INTENT;
-import static com.vorlonsoft.android.rate.StoreType.MI;
-import static com.vorlonsoft.android.rate.StoreType.OTHER;
-import static com.vorlonsoft.android.rate.StoreType.SAMSUNG;
-import static com.vorlonsoft.android.rate.StoreType.SLIDEME;
-import static com.vorlonsoft.android.rate.StoreType.TENCENT;
-import static com.vorlonsoft.android.rate.StoreType.YANDEX;
+import static com.vorlonsoft.android.rate.IntentHelper.getFirstLaunchableIntent;
+import static com.vorlonsoft.android.rate.PreferenceHelper.getStorage;
 import static com.vorlonsoft.android.rate.Utils.TAG;
+import static com.vorlonsoft.android.rate.Utils.getMetricsListener;
 import static com.vorlonsoft.android.rate.Utils.getDialogBuilder;
 
 public class DefaultDialogManager implements DialogManager {
@@ -46,88 +33,41 @@ public class DefaultDialogManager implements DialogManager {
     protected final DialogInterface.OnClickListener positiveListener = new DialogInterface.OnClickListener() {
         @Override
         public void onClick(final DialogInterface dialog, final int which) {
-            final Intent[] intentsToAppStores;
-            final String packageName = context.getPackageName();
-            if ((packageName != null) && (packageName.hashCode() != "".hashCode())) {
-                switch (storeOptions.getStoreType()) {
-                    case AMAZON:
-                        intentsToAppStores = createIntentsForStore(context, AMAZON, packageName);
-                        break;
-                    case APPLE:
-                        intentsToAppStores = createIntentsForStore(context, APPLE, storeOptions.getApplicationId());
-                        break;
-                    case BAZAAR:
-                        intentsToAppStores = createIntentsForStore(context, BAZAAR, packageName);
-                        break;
-                    case BLACKBERRY:
-                        intentsToAppStores = createIntentsForStore(context, BLACKBERRY, storeOptions.getApplicationId());
-                        break;
-                    case CHINESESTORES:
-                        intentsToAppStores = createIntentsForStore(context, CHINESESTORES, packageName);
-                        break;
-                    case MI:
-                        intentsToAppStores = createIntentsForStore(context, MI, packageName);
-                        break;
-                    case SAMSUNG:
-                        intentsToAppStores = createIntentsForStore(context, SAMSUNG, packageName);
-                        break;
-                    case SLIDEME:
-                        intentsToAppStores = createIntentsForStore(context, SLIDEME, packageName);
-                        break;
-                    case TENCENT:
-                        intentsToAppStores = createIntentsForStore(context, TENCENT, packageName);
-                        break;
-                    case YANDEX:
-                        intentsToAppStores = createIntentsForStore(context, YANDEX, packageName);
-                        break;
-                    case INTENT:
-                    case OTHER:
-                        intentsToAppStores = storeOptions.getIntents();
-                        break;
-                    default:
-                        intentsToAppStores = createIntentsForStore(context, GOOGLEPLAY, packageName);
-                }
-                if (intentsToAppStores == null) {
-                    Log.w(TAG, "Failed to rate app, can't create intents for store");
-                }
-            } else {
-                Log.w(TAG, "Failed to rate app, can't get app package name");
-                intentsToAppStores = null;
+            final RateMetricsListener metrics = getMetricsListener();
+            final long startNanos = metrics == null ? 0L : System.nanoTime();
+            final Intent[] intentsToAppStores = StoreIntentCache.getIntents(context, storeOptions);
+            final byte launchableIntent = ((intentsToAppStores == null) || (intentsToAppStores.length == 0)) ?
+                    -1 : getFirstLaunchableIntent(context, intentsToAppStores);
+            if (metrics != null) {
+                metrics.onStoreIntentResolved(System.nanoTime() - startNanos,
+                        intentsToAppStores == null ? 0 : intentsToAppStores.length);
             }
-            try {
-                if (intentsToAppStores != null) {
-                    if (intentsToAppStores.length == 0) {
-                        Log.w(TAG, "Failed to rate app, no intent found for startActivity (intentsToAppStores.length == 0)");
-                    } else if (intentsToAppStores[0] == null) {
-                        throw new ActivityNotFoundException("Failed to rate app, no intent found for startActivity (intentsToAppStores[0] == null)");
-                    } else {
-                        context.startActivity(intentsToAppStores[0]);
-                    }
-                }
-            } catch (ActivityNotFoundException e) {
-                Log.w(TAG, "Failed to rate app, no activity found for " + intentsToAppStores[0], e);
-                byte intentsToAppStoresNumber = (byte) intentsToAppStores.length;
-                if (intentsToAppStoresNumber > 1) {
-                    boolean isCatch;
-                    for (byte b = 1; b < intentsToAppStoresNumber; b++) { // intentsToAppStores[1] - second intent in the array
-                        try {
-                            if (intentsToAppStores[b] == null) {
-                                throw new ActivityNotFoundException("Failed to rate app, no intent found for startActivity (intentsToAppStores[" + b + "] == null)");
-                            } else {
-                                context.startActivity(intentsToAppStores[b]);
-                            }
-                            isCatch = false;
-                        } catch (ActivityNotFoundException ex) {
-                            Log.w(TAG, "Failed to rate app, no activity found for " + intentsToAppStores[b], ex);
-                            isCatch = true;
-                        }
-                        if (!isCatch) {
-                            break;
+            byte launchedIntent = -1;
+            if (intentsToAppStores == null) {
+                Log.w(TAG, "Failed to rate app, can't create intents for store");
+            } else if (intentsToAppStores.length == 0) {
+                Log.w(TAG, "Failed to rate app, no intent found for startActivity (intentsToAppStores.length == 0)");
+            } else {
+                // resolveActivity() may miss stores hidden by package visibility rules, so the
+                // intents are still tried in order with startActivity() when none resolves
+                final byte firstIntent = launchableIntent < 0 ? 0 : launchableIntent;
+                for (byte b = firstIntent; (b < intentsToAppStores.length) && (launchedIntent < 0); b++) {
+                    try {
+                        if (intentsToAppStores[b] == null) {
+                            throw new ActivityNotFoundException("Failed to rate app, no intent found for startActivity (intentsToAppStores[" + b + "] == null)");
+                        } else {
+                            context.startActivity(intentsToAppStores[b]);
                         }
+                        launchedIntent = b;
+                    } catch (ActivityNotFoundException e) {
+                        Log.w(TAG, "Failed to rate app, no activity found for " + intentsToAppStores[b], e);
                     }
                 }
             }
-            setIsAgreeShowDialog(context, false);
+            if (metrics != null) {
+                metrics.onStoreLaunched(launchedIntent < 0 ? null : intentsToAppStores[launchedIntent], launchedIntent);
+            }
+            getStorage(context, dialogOptions.getStorageName()).setAgreeShowDialog(false);
             if (listener != null) listener.onClickButton((byte) which);
         }
     };
@@ -135,7 +75,7 @@ public class DefaultDialogManager implements DialogManager {
     protected final DialogInterface.OnClickListener negativeListener = new DialogInterface.OnClickListener() {
         @Override
         public void onClick(final DialogInterface dialog, final int which) {
-            setIsAgreeShowDialog(context, false);
+            getStorage(context, dialogOptions.getStorageName()).setAgreeShowDialog(false);
             if (listener != null) listener.onClickButton((byte) which);
         }
     };
@@ -143,7 +83,7 @@ public class DefaultDialogManager implements DialogManager {
     protected final DialogInterface.OnClickListener neutralListener = new DialogInterface.OnClickListener() {
         @Override
         public void onClick(final DialogInterface dialog, final int which) {
-            setRemindInterval(context);
+            getStorage(context, dialogOptions.getStorageName()).setRemindInterval();
             if (listener != null) listener.onClickButton((byte) which);
         }
     };
@@ -6,16 +6,33 @@
 
 package com.vorlonsoft.android.rate;
 
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
 import android.view.View;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Locale;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 final class DialogOptions {
 
+    private static final byte TEXT_TITLE = (byte) 0;
+
+    private static final byte TEXT_MESSAGE = (byte) 1;
+
+    private static final byte TEXT_POSITIVE = (byte) 2;
+
+    private static final byte TEXT_NEUTRAL = (byte) 3;
+
+    private static final byte TEXT_NEGATIVE = (byte) 4;
+
     private boolean cancelable = false;
 
     private boolean showNegativeButton = true;
@@ -50,7 +67,31 @@ final class DialogOptions {
 
     private Reference<OnClickButtonListener> listener = null;
 
+    /**
+     * The texts resolved from their resource IDs, valid for resolvedLocale and resolvedUiMode only
+     */
+    private final String[] resolvedTexts = new String[5];
+
+    private Locale resolvedLocale = null;
+
+    private int resolvedUiMode = 0;
+
+    /**
+     * The storage of the AppRate instance owning these options, null for the default one
+     */
+    private final String storageName;
+
     DialogOptions() {
+        this(null);
+    }
+
+    DialogOptions(@Nullable final String storageName) {
+        this.storageName = storageName;
+    }
+
+    @Nullable
+    String getStorageName() {
+        return storageName;
     }
 
     boolean shouldShowNeutralButton() {
@@ -92,6 +133,7 @@ final class DialogOptions {
 
     void setTitleResId(int textTitleResId) {
         this.textTitleResId = textTitleResId;
+        invalidateResolvedTexts();
     }
 
     @SuppressWarnings("unused")
@@ -101,6 +143,7 @@ final class DialogOptions {
 
     void setMessageResId(int textMessageResId) {
         this.textMessageResId = textMessageResId;
+        invalidateResolvedTexts();
     }
 
     @SuppressWarnings("unused")
@@ -110,6 +153,7 @@ final class DialogOptions {
 
     void setTextPositiveResId(int textPositiveResId) {
         this.textPositiveResId = textPositiveResId;
+        invalidateResolvedTexts();
     }
 
     @SuppressWarnings("unused")
@@ -119,6 +163,7 @@ final class DialogOptions {
 
     void setTextNeutralResId(int textNeutralResId) {
         this.textNeutralResId = textNeutralResId;
+        invalidateResolvedTexts();
     }
 
     @SuppressWarnings("unused")
@@ -128,6 +173,7 @@ final class DialogOptions {
 
     void setTextNegativeResId(int textNegativeResId) {
         this.textNegativeResId = textNegativeResId;
+        invalidateResolvedTexts();
     }
 
     View getView() {
@@ -147,9 +193,48 @@ final class DialogOptions {
         this.listener = new WeakReference<>(listener);
     }
 
+    @SuppressLint("ObsoleteSdkInt")
+    @SuppressWarnings("deprecation")
+    private static Locale getLocale(@NonNull final Configuration configuration) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return getPrimaryLocale(configuration);
+        }
+        return configuration.locale;
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private static Locale getPrimaryLocale(@NonNull final Configuration configuration) {
+        return configuration.getLocales().get(0);
+    }
+
+    /**
+     * Drops the resolved texts, they are resolved again on next use.
+     */
+    void invalidateResolvedTexts() {
+        Arrays.fill(resolvedTexts, null);
+        resolvedLocale = null;
+    }
+
+    /**
+     * Returns the text of {@code resId}, looked up once per locale and UI mode and shared by all dialogs.
+     */
+    private String getResolvedText(@NonNull final Context context, final byte index, final int resId) {
+        final Configuration configuration = context.getResources().getConfiguration();
+        final Locale locale = getLocale(configuration);
+        if ((locale == null) || !locale.equals(resolvedLocale) || (configuration.uiMode != resolvedUiMode)) {
+            invalidateResolvedTexts();
+            resolvedLocale = locale;
+            resolvedUiMode = configuration.uiMode;
+        }
+        if (resolvedTexts[index] == null) {
+            resolvedTexts[index] = context.getString(resId);
+        }
+        return resolvedTexts[index];
+    }
+
     String getTitleText(Context context) {
         if (titleText == null) {
-            return context.getString(textTitleResId);
+            return getResolvedText(context, TEXT_TITLE, textTitleResId);
         }
         return titleText;
     }
@@ -160,7 +245,7 @@ final class DialogOptions {
 
     String getMessageText(Context context) {
         if (messageText == null) {
-            return context.getString(textMessageResId);
+            return getResolvedText(context, TEXT_MESSAGE, textMessageResId);
         }
         return messageText;
     }
@@ -171,7 +256,7 @@ final class DialogOptions {
 
     String getPositiveText(Context context) {
         if (positiveText == null) {
-            return context.getString(textPositiveResId);
+            return getResolvedText(context, TEXT_POSITIVE, textPositiveResId);
         }
         return positiveText;
     }
@@ -182,7 +267,7 @@ final class DialogOptions {
 
     String getNeutralText(Context context) {
         if (neutralText == null) {
-            return context.getString(textNeutralResId);
+            return getResolvedText(context, TEXT_NEUTRAL, textNeutralResId);
         }
         return neutralText;
     }
@@ -193,7 +278,7 @@ final class DialogOptions {
 
     String getNegativeText(Context context) {
         if (negativeText == null) {
-            return context.getString(textNegativeResId);
+            return getResolvedText(context, TEXT_NEGATIVE, textNegativeResId);
         }
         return negativeText;
     }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.app.Dialog;
+import android.content.ComponentCallbacks;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Builds the rate dialog of the resumed Activity ahead of time, when the main looper is idle
+ * and the dialog should be shown, so that {@link AppRate#showRateDialog(Activity)} only adds its window.<br>
+ * The dialog is dropped when its Activity is destroyed or the configuration changes.
+ * All methods run on the main thread.
+ */
+@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+final class DialogPrewarmer implements Application.ActivityLifecycleCallbacks, ComponentCallbacks {
+
+    private final AppRate appRate;
+
+    private final Application application;
+
+    private Reference<Activity> activity = null;
+
+    private Dialog dialog = null;
+
+    private boolean isIdleHandlerQueued = false;
+
+    private final MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            isIdleHandlerQueued = false;
+            prewarm();
+            return false;
+        }
+    };
+
+    DialogPrewarmer(@NonNull final AppRate appRate, @NonNull final Application application) {
+        this.appRate = appRate;
+        this.application = application;
+    }
+
+    void start() {
+        application.registerActivityLifecycleCallbacks(this);
+        application.registerComponentCallbacks(this);
+    }
+
+    void stop() {
+        application.unregisterActivityLifecycleCallbacks(this);
+        application.unregisterComponentCallbacks(this);
+        if (isIdleHandlerQueued) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+            isIdleHandlerQueued = false;
+        }
+        drop();
+    }
+
+    private void drop() {
+        activity = null;
+        dialog = null;
+    }
+
+    private void prewarm() {
+        final Activity currentActivity = activity == null ? null : activity.get();
+        if ((currentActivity == null) || (dialog != null) || currentActivity.isFinishing()
+                || !(appRate.isDebug() || appRate.shouldShowRateDialog())) {
+            return;
+        }
+        dialog = appRate.createDialog(currentActivity);
+        if ((dialog != null) && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)) {
+            // inflates the window content now instead of in show()
+            dialog.create();
+        }
+    }
+
+    /**
+     * @return the prewarmed dialog of {@code activity}, null if there is none; it isn't kept after this call
+     */
+    @Nullable
+    Dialog take(@NonNull final Activity activity) {
+        if ((this.activity == null) || (this.activity.get() != activity)) {
+            return null;
+        }
+        final Dialog prewarmedDialog = dialog;
+        dialog = null;
+        return prewarmedDialog;
+    }
+
+    @Override
+    public void onActivityCreated(final Activity activity, final Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(final Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(final Activity activity) {
+        if ((this.activity == null) || (this.activity.get() != activity)) {
+            drop();
+            this.activity = new WeakReference<>(activity);
+        }
+        if ((dialog == null) && !isIdleHandlerQueued) {
+            Looper.myQueue().addIdleHandler(idleHandler);
+            isIdleHandlerQueued = true;
+        }
+    }
+
+    @Override
+    public void onActivityPaused(final Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(final Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(final Activity activity, final Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(final Activity activity) {
+        if ((this.activity != null) && (this.activity.get() == activity)) {
+            drop();
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(final Configuration newConfig) {
+        dialog = null;
+    }
+
+    @Override
+    public void onLowMemory() {
+        dialog = null;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Re-evaluates the show-dialog decision after every {@link RateStorage} mutation and at the
+ * next time boundary of the built-in conditions, and notifies the listeners when it changes.<br>
+ * Mutations from any thread are coalesced into one main looper message; a single delayed message
+ * tracks the time boundary. Handler delays count uptime, which stops in deep sleep, while the
+ * boundary is in {@link RateClock} time, so the delay is capped at {@link #MAX_CHECK_DELAY} and
+ * the decision is also re-checked whenever an Activity resumes (API 14+).<br>
+ * Everything but {@link #onChange()} runs on the main thread.
+ */
+final class EligibilityNotifier implements RateStorage.OnChangeListener {
+
+    /**
+     * The longest delay of the time boundary check, in milliseconds
+     */
+    static final long MAX_CHECK_DELAY = 60L * 60L * 1000L;
+
+    private final Context context;
+
+    private final AppRate appRate;
+
+    private final RateStorage storage;
+
+    private final RateEngine engine;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final List<OnEligibilityChangedListener> listeners = new ArrayList<>();
+
+    private boolean isEligible = false;
+
+    private Object activityLifecycleCallbacks = null;
+
+    private final Runnable checkTask = new Runnable() {
+        @Override
+        public void run() {
+            check();
+        }
+    };
+
+    EligibilityNotifier(@NonNull final Context context, @NonNull final AppRate appRate,
+                        @NonNull final RateStorage storage, @NonNull final RateEngine engine) {
+        this.context = context.getApplicationContext();
+        this.appRate = appRate;
+        this.storage = storage;
+        this.engine = engine;
+    }
+
+    /**
+     * The first listener starts the tracking, a listener added while the user is eligible is notified at once.
+     */
+    void addListener(@NonNull final OnEligibilityChangedListener listener) {
+        if (listeners.contains(listener)) {
+            return;
+        }
+        if (listeners.isEmpty()) {
+            storage.setOnChangeListener(this);
+            registerResumeTrigger();
+        }
+        listeners.add(listener);
+        if (isEligible) {
+            listener.onEligibilityChanged(true);
+        }
+        onChange();
+    }
+
+    void removeListener(@NonNull final OnEligibilityChangedListener listener) {
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            storage.setOnChangeListener(null);
+            unregisterResumeTrigger();
+            handler.removeCallbacks(checkTask);
+            isEligible = false;
+        }
+    }
+
+    @SuppressLint("ObsoleteSdkInt")
+    private void registerResumeTrigger() {
+        if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) && (context instanceof Application)) {
+            registerActivityLifecycleCallbacks((Application) context);
+        }
+    }
+
+    @SuppressLint("ObsoleteSdkInt")
+    private void unregisterResumeTrigger() {
+        if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) && (activityLifecycleCallbacks != null)) {
+            unregisterActivityLifecycleCallbacks((Application) context);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerActivityLifecycleCallbacks(@NonNull final Application application) {
+        final Application.ActivityLifecycleCallbacks callbacks = new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(final Activity activity, final Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(final Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(final Activity activity) {
+                // the time boundary may have passed while the device was asleep
+                onChange();
+            }
+
+            @Override
+            public void onActivityPaused(final Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(final Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(final Activity activity, final Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(final Activity activity) {
+            }
+        };
+        application.registerActivityLifecycleCallbacks(callbacks);
+        activityLifecycleCallbacks = callbacks;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void unregisterActivityLifecycleCallbacks(@NonNull final Application application) {
+        application.unregisterActivityLifecycleCallbacks((Application.ActivityLifecycleCallbacks) activityLifecycleCallbacks);
+        activityLifecycleCallbacks = null;
+    }
+
+    /**
+     * Called by the storage on the mutating thread, replaces the pending check including the time boundary one.
+     */
+    @Override
+    public void onChange() {
+        handler.removeCallbacks(checkTask);
+        handler.post(checkTask);
+    }
+
+    private void check() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        final boolean isEligibleNow = appRate.shouldShowRateDialog();
+        final long nextChangeTime = engine.getNextDecisionChangeTime();
+        if (nextChangeTime != Long.MAX_VALUE) {
+            final long delay = nextChangeTime - storage.getClock().currentTimeMillis();
+            handler.postDelayed(checkTask, Math.min(Math.max(0L, delay), MAX_CHECK_DELAY));
+        }
+        if (isEligibleNow != isEligible) {
+            isEligible = isEligibleNow;
+            for (OnEligibilityChangedListener listener : new ArrayList<>(listeners)) {
+                listener.onEligibilityChanged(isEligibleNow);
+            }
+        }
+    }
+}
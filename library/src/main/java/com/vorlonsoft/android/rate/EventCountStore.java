@@ -0,0 +1,650 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.Utils.TAG;
+import static com.vorlonsoft.android.rate.Utils.getBackgroundHandler;
+
+/**
+ * Custom event counters, kept apart from the main preferences file.<br>
+ * The file is memory-mapped only when an event is first used and is made of a 32-byte header
+ * (magic, version, generation, capacity, 64-bit stamp, reserved) followed by fixed-width 16-byte slots
+ * (64-bit name hash, generation, count). A slot whose generation differs from the header's
+ * reads as zero, so resetting every event is one header write.<br>
+ * The changed counters are copied to their slots on the AndroidRate worker thread, and every
+ * flush that wrote slots ends with {@link MappedByteBuffer#force()} outside the store lock: the
+ * counts copied to the mapping survive a process death at once, and a power loss once the flush
+ * has returned. A {@link #clear()} runs on the calling thread, so it isn't forced until the next flush.<br>
+ * In multi-process mode the worker thread adds the increments to the slots under a {@link FileLock}
+ * and bumps the stamp. Each process keeps its counters in memory and re-reads them from the
+ * slots only when it sees a new stamp.
+ */
+final class EventCountStore extends EventCounters {
+
+    private static final int MAGIC = 0x41524543;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int SLOT_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private static final int GENERATION_OFFSET = 8;
+
+    private static final int CAPACITY_OFFSET = 12;
+
+    private static final int STAMP_OFFSET = 16;
+
+    private final Context context;
+
+    private final String fileName;
+
+    private final boolean isMultiProcess;
+
+    private File file = null;
+
+    /**
+     * Name hash to slot index, built when the file is mapped
+     */
+    private final Map<Long, Integer> slots = new HashMap<>();
+
+    private final Map<String, RateCounter> pending = new HashMap<>();
+
+    /**
+     * The mutations not yet added to the slots, multi-process mode only
+     */
+    private final Map<String, PendingEvent> pendingEvents = new HashMap<>();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private MappedByteBuffer buffer = null;
+
+    private boolean isOpened = false;
+
+    private int generation = 1;
+
+    private int capacity = 0;
+
+    /**
+     * The stamp the counters were last read at, multi-process mode only
+     */
+    private long stamp = 0L;
+
+    /**
+     * True if slots were written outside {@link #flush()} and the mapping must be forced by the next flush
+     */
+    private boolean isForcePending = false;
+
+    /**
+     * Kept open for the file locks, multi-process mode only
+     */
+    private FileChannel lockChannel = null;
+
+    /**
+     * Does no I/O, the file is resolved and mapped on first use.
+     *
+     * @param isMultiProcess true if other processes of the app use the same file at the same time
+     */
+    EventCountStore(@NonNull final Context context, @NonNull final String fileName, final boolean isMultiProcess) {
+        this.context = context.getApplicationContext();
+        this.fileName = fileName;
+        this.isMultiProcess = isMultiProcess;
+    }
+
+    /**
+     * A set count or the sum of the increments since the last flush
+     */
+    private static final class PendingEvent {
+
+        private boolean isSet = false;
+
+        private int value = 0;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the event name, never 0 (0 marks a free slot).
+     */
+    private static long hash(@NonNull final String eventName) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < eventName.length(); i++) {
+            hash ^= eventName.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0L ? 1L : hash;
+    }
+
+    private static int getSlotOffset(final int slot) {
+        return HEADER_SIZE + (slot * SLOT_SIZE);
+    }
+
+    private File getFile() {
+        if (file == null) {
+            file = new File(context.getFilesDir(), fileName);
+        }
+        return file;
+    }
+
+    private void map(final int newCapacity) throws IOException {
+        if (lockChannel != null) {
+            // closing another channel of the file would release the file lock
+            buffer = lockChannel.map(FileChannel.MapMode.READ_WRITE, 0, getSlotOffset(newCapacity));
+        } else {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, getSlotOffset(newCapacity));
+            } finally {
+                // the mapping stays valid after the channel is closed
+                randomAccessFile.close();
+            }
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * @return the file lock in multi-process mode, null otherwise
+     */
+    @Nullable
+    private FileLock lock() throws IOException {
+        if (!isMultiProcess) {
+            return null;
+        }
+        if (lockChannel == null) {
+            lockChannel = new RandomAccessFile(getFile(), "rw").getChannel();
+        }
+        return lockChannel.lock();
+    }
+
+    private static void release(@Nullable final FileLock lock) {
+        if (lock != null) {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to unlock the custom events file", e);
+            }
+        }
+    }
+
+    private static int readVersion(@NonNull final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(8);
+        channel.read(header, 0L);
+        return header.getInt(0) == MAGIC ? header.getInt(4) : 0;
+    }
+
+    /**
+     * @return the version of the file, 0 if it isn't a custom events file
+     */
+    private int readVersion() throws IOException {
+        if (lockChannel != null) {
+            return readVersion(lockChannel);
+        }
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(getFile(), "r");
+        try {
+            return readVersion(randomAccessFile.getChannel());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < getSlotOffset(capacity); i += 8) {
+            buffer.putLong(i, 0L);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(GENERATION_OFFSET, generation);
+    }
+
+    /**
+     * Indexes the slots from {@code firstSlot} on, they are used in order.
+     */
+    private void indexSlots(final int firstSlot) {
+        for (int slot = firstSlot; slot < capacity; slot++) {
+            final long slotHash = buffer.getLong(getSlotOffset(slot));
+            if (slotHash == 0L) {
+                return;
+            }
+            slots.put(slotHash, slot);
+        }
+    }
+
+    /**
+     * Picks up the generation, the growth and the new slots written by other processes.
+     */
+    private void refreshLayout() throws IOException {
+        generation = buffer.getInt(GENERATION_OFFSET);
+        final int fileCapacity = buffer.getInt(CAPACITY_OFFSET);
+        if (fileCapacity > capacity) {
+            map(fileCapacity);
+        }
+        indexSlots(slots.size());
+    }
+
+    /**
+     * Maps the file on first use, creating it if needed. On I/O errors the store works in memory only.
+     */
+    private void ensureOpened() {
+        if (isOpened) {
+            return;
+        }
+        isOpened = true;
+        final File file = getFile();
+        FileLock lock = null;
+        try {
+            lock = lock();
+            final long length = file.length();
+            final int version = length < HEADER_SIZE ? 0 : readVersion();
+            if (version == VERSION) {
+                map(Math.max(INITIAL_CAPACITY, (int) ((length - HEADER_SIZE) / SLOT_SIZE)));
+                generation = buffer.getInt(GENERATION_OFFSET);
+            } else {
+                map(INITIAL_CAPACITY);
+                reset();
+            }
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            stamp = buffer.getLong(STAMP_OFFSET);
+            indexSlots(0);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to map the custom events file, counts are kept in memory only", e);
+            buffer = null;
+        } finally {
+            release(lock);
+        }
+    }
+
+    @Override
+    synchronized int read(@NonNull final String eventName) {
+        ensureOpened();
+        if (buffer == null) {
+            return 0;
+        }
+        return readSlot(hash(eventName));
+    }
+
+    private int readSlot(final long eventHash) {
+        final Integer slot = slots.get(eventHash);
+        if (slot == null) {
+            return 0;
+        }
+        final int offset = getSlotOffset(slot);
+        return buffer.getInt(offset + 8) == generation ? buffer.getInt(offset + 12) : 0;
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void write(final String eventName, final int count) {
+        ensureOpened();
+        if (buffer == null) {
+            return;
+        }
+        writeSlot(hash(eventName), count);
+    }
+
+    private void writeSlot(final long eventHash, final int count) {
+        Integer slot = slots.get(eventHash);
+        if (slot == null) {
+            slot = slots.size();
+            if (slot >= capacity) {
+                try {
+                    map(capacity * 2);
+                    buffer.putInt(CAPACITY_OFFSET, capacity);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to grow the custom events file", e);
+                    return;
+                }
+            }
+            slots.put(eventHash, slot);
+        }
+        final int offset = getSlotOffset(slot);
+        buffer.putLong(offset, eventHash);
+        buffer.putInt(offset + 8, generation);
+        buffer.putInt(offset + 12, count);
+    }
+
+    @Override
+    synchronized void schedule(@NonNull final String eventName, @NonNull final RateCounter counter) {
+        if (pending.isEmpty()) {
+            getBackgroundHandler().post(flushRunnable);
+        }
+        pending.put(eventName, counter);
+    }
+
+    private void addPendingEvent(@NonNull final String eventName, final boolean isSet, final int value) {
+        PendingEvent pendingEvent = pendingEvents.get(eventName);
+        if (pendingEvent == null) {
+            if (pendingEvents.isEmpty()) {
+                getBackgroundHandler().post(flushRunnable);
+            }
+            pendingEvent = new PendingEvent();
+            pendingEvents.put(eventName, pendingEvent);
+        }
+        if (isSet) {
+            pendingEvent.isSet = true;
+            pendingEvent.value = value;
+        } else {
+            pendingEvent.value = RateCounter.saturatedAdd(pendingEvent.value, value);
+        }
+    }
+
+    /**
+     * Re-reads the counters in memory if another process (or the worker thread) has changed the file.
+     */
+    private void refreshIfChanged() {
+        ensureOpened();
+        if ((buffer == null) || (buffer.getLong(STAMP_OFFSET) == stamp)) {
+            return;
+        }
+        try {
+            refreshLayout();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to remap the custom events file", e);
+            return;
+        }
+        stamp = buffer.getLong(STAMP_OFFSET);
+        for (Map.Entry<String, RateCounter> entry : counters.entrySet()) {
+            final PendingEvent pendingEvent = pendingEvents.get(entry.getKey());
+            final int count = (pendingEvent != null) && pendingEvent.isSet ? 0 : readSlot(hash(entry.getKey()));
+            entry.getValue().set(pendingEvent == null ? count : RateCounter.saturatedAdd(count, pendingEvent.value));
+        }
+        modCount.incrementAndGet();
+    }
+
+    @Override
+    int get(@NonNull final String eventName) {
+        if (isMultiProcess) {
+            synchronized (this) {
+                refreshIfChanged();
+                return super.get(eventName);
+            }
+        }
+        return super.get(eventName);
+    }
+
+    /**
+     * In multi-process mode it also picks up the counts changed by other processes.
+     */
+    @Override
+    int getModCount() {
+        if (isMultiProcess) {
+            synchronized (this) {
+                refreshIfChanged();
+            }
+        }
+        return super.getModCount();
+    }
+
+    @Override
+    void set(@NonNull final String eventName, final int count) {
+        if (isMultiProcess) {
+            synchronized (this) {
+                getCounter(eventName).set(count);
+                modCount.incrementAndGet();
+                addPendingEvent(eventName, true, count);
+            }
+        } else {
+            super.set(eventName, count);
+        }
+    }
+
+    /**
+     * Lock-free in single-process mode, in multi-process mode the increments are summed under the store lock.
+     */
+    @Override
+    void add(@NonNull final String eventName, final int delta) {
+        if (isMultiProcess) {
+            synchronized (this) {
+                getCounter(eventName).addAndGet(delta);
+                modCount.incrementAndGet();
+                addPendingEvent(eventName, false, delta);
+            }
+        } else {
+            super.add(eventName, delta);
+        }
+    }
+
+    /**
+     * Moves the events kept in the preferences file by the previous versions to the store, once.
+     */
+    @Override
+    void load(@NonNull final KeyValueStore store, @NonNull final Map<String, ?> values) {
+        final int prefixLength = PREF_KEY_CUSTOM_EVENT_PREFIX.length();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (entry.getKey().startsWith(PREF_KEY_CUSTOM_EVENT_PREFIX)) {
+                if (entry.getValue() instanceof Integer) {
+                    set(entry.getKey().substring(prefixLength), RateCounter.fromLegacyCount((Integer) entry.getValue()));
+                }
+                store.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Copies the changed counters to their slots, then forces them to the storage device without
+     * holding the store lock. Counters dropped by {@link #clear()} are skipped.
+     */
+    void flush() {
+        final MappedByteBuffer written;
+        synchronized (this) {
+            final MappedByteBuffer flushed = isMultiProcess ? flushPendingEvents() : flushCounters();
+            written = ((flushed == null) && isForcePending) ? buffer : flushed;
+            isForcePending = false;
+        }
+        if (written != null) {
+            // msync outside the store lock, so that reads and increments never wait for the disk
+            written.force();
+        }
+    }
+
+    /**
+     * Copies the changed counters to their slots, called with the store lock held.
+     *
+     * @return the mapping to force, null if nothing was written
+     */
+    @Nullable
+    private MappedByteBuffer flushCounters() {
+        boolean isWritten = false;
+        for (Map.Entry<String, RateCounter> entry : pending.entrySet()) {
+            final RateCounter counter = entry.getValue();
+            if (counters.get(entry.getKey()) == counter) {
+                counter.markClean();
+                write(entry.getKey(), counter.get());
+                isWritten = true;
+            }
+        }
+        pending.clear();
+        return isWritten ? buffer : null;
+    }
+
+    /**
+     * Adds the pending increments to the slots under the file lock and bumps the stamp, called with the store lock held.
+     *
+     * @return the mapping to force, null if nothing was written
+     */
+    @Nullable
+    private MappedByteBuffer flushPendingEvents() {
+        ensureOpened();
+        if ((buffer == null) || pendingEvents.isEmpty()) {
+            pendingEvents.clear();
+            return null;
+        }
+        MappedByteBuffer written = null;
+        FileLock lock = null;
+        try {
+            lock = lock();
+            refreshLayout();
+            writePendingEvents();
+            buffer.putLong(STAMP_OFFSET, buffer.getLong(STAMP_OFFSET) + 1L);
+            written = buffer;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write the custom events file", e);
+        } finally {
+            release(lock);
+        }
+        pendingEvents.clear();
+        refreshIfChanged();
+        return written;
+    }
+
+    /**
+     * Adds the pending increments to the slots, called with the store lock and the file lock held.
+     */
+    private void writePendingEvents() {
+        for (Map.Entry<String, PendingEvent> entry : pendingEvents.entrySet()) {
+            final PendingEvent pendingEvent = entry.getValue();
+            final long eventHash = hash(entry.getKey());
+            if (pendingEvent.isSet) {
+                writeSlot(eventHash, pendingEvent.value);
+            } else {
+                writeSlot(eventHash, RateCounter.saturatedAdd(readSlot(eventHash), pendingEvent.value));
+            }
+        }
+    }
+
+    /**
+     * Writes the changes to the slots at once, under one store lock and, in multi-process mode,
+     * one file lock, together with the increments still pending. A clear is a generation bump in
+     * the same write. The mapping is forced by the next flush on the worker thread.
+     */
+    @Override
+    synchronized void apply(final boolean isCleared,
+                            @NonNull final Map<String, RateTransaction.EventChange> changes,
+                            @NonNull final Map<String, Object> values) {
+        if (isCleared) {
+            super.clear();
+            pending.clear();
+            pendingEvents.clear();
+        }
+        modCount.incrementAndGet();
+        ensureOpened();
+        if (buffer == null) {
+            if (isCleared) {
+                generation++;
+            }
+            applyChanges(changes);
+            return;
+        }
+        boolean isApplied = false;
+        boolean isWritten = false;
+        FileLock lock = null;
+        try {
+            lock = lock();
+            if (isMultiProcess) {
+                refreshLayout();
+            }
+            if (isCleared) {
+                generation++;
+                buffer.putInt(GENERATION_OFFSET, generation);
+            }
+            // after the generation bump, so that the counters of a cleared store start from zero
+            applyChanges(changes);
+            isApplied = true;
+            if (isMultiProcess) {
+                writePendingEvents();
+            } else {
+                for (String eventName : changes.keySet()) {
+                    final RateCounter counter = counters.get(eventName);
+                    if (counter != null) {
+                        writeSlot(hash(eventName), counter.get());
+                    }
+                }
+            }
+            buffer.putLong(STAMP_OFFSET, buffer.getLong(STAMP_OFFSET) + 1L);
+            isForcePending = true;
+            isWritten = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write the custom events file", e);
+        } finally {
+            release(lock);
+        }
+        if (!isApplied) {
+            applyChanges(changes);
+        }
+        if (!isWritten && !isMultiProcess) {
+            // left to the next flush, the increments of the multi-process mode are still pending
+            for (String eventName : changes.keySet()) {
+                final RateCounter counter = counters.get(eventName);
+                if (counter != null) {
+                    schedule(eventName, counter);
+                }
+            }
+        }
+        if (isMultiProcess && isWritten) {
+            pendingEvents.clear();
+            refreshIfChanged();
+        }
+        getBackgroundHandler().post(flushRunnable);
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void applyChanges(@NonNull final Map<String, RateTransaction.EventChange> changes) {
+        for (Map.Entry<String, RateTransaction.EventChange> entry : changes.entrySet()) {
+            final RateTransaction.EventChange eventChange = entry.getValue();
+            if (eventChange.isSet || (eventChange.value != 0)) {
+                applyInMemory(entry.getKey(), eventChange);
+                if (isMultiProcess) {
+                    addPendingEvent(entry.getKey(), eventChange.isSet, eventChange.value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets every event to zero in O(1): the header generation is bumped and the slots become stale.
+     */
+    @Override
+    synchronized void clear() {
+        super.clear();
+        pending.clear();
+        pendingEvents.clear();
+        if (isOpened || getFile().exists()) {
+            ensureOpened();
+            if (buffer == null) {
+                generation++;
+                return;
+            }
+            FileLock lock = null;
+            try {
+                lock = lock();
+                if (isMultiProcess) {
+                    refreshLayout();
+                }
+                generation++;
+                buffer.putInt(GENERATION_OFFSET, generation);
+                buffer.putLong(STAMP_OFFSET, buffer.getLong(STAMP_OFFSET) + 1L);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to reset the custom events file", e);
+            } finally {
+                release(lock);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ package com.vorlonsoft.android.rate;
 
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.util.Log;
 
 import java.util.Arrays;
@@ -15,41 +16,11 @@ import java.util.Arrays;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import static com.vorlonsoft.android.rate.StoreType.AMAZON;
-import static com.vorlonsoft.android.rate.StoreType.APPLE;
-import static com.vorlonsoft.android.rate.StoreType.BAZAAR;
-import static com.vorlonsoft.android.rate.StoreType.BLACKBERRY;
-import static com.vorlonsoft.android.rate.StoreType.CHINESESTORES;
-import static com.vorlonsoft.android.rate.StoreType.MI;
-import static com.vorlonsoft.android.rate.StoreType.SAMSUNG;
-import static com.vorlonsoft.android.rate.StoreType.SLIDEME;
-import static com.vorlonsoft.android.rate.StoreType.TENCENT;
-import static com.vorlonsoft.android.rate.StoreType.YANDEX;
-import static com.vorlonsoft.android.rate.UriHelper.getStoreUri;
-import static com.vorlonsoft.android.rate.UriHelper.getStoreWebUri;
 import static com.vorlonsoft.android.rate.Utils.TAG;
 import static com.vorlonsoft.android.rate.Utils.isPackagesExists;
 
 final class IntentHelper {
 
-    private static final String AMAZON_APPSTORE_PACKAGE_NAME = "com.amazon.venezia";
-
-    private static final String BLACKBERRY_WORLD_PACKAGE_NAME = "net.rim.bb.appworld";
-
-    private static final String CAFE_BAZAAR_PACKAGE_NAME = "com.farsitel.bazaar";
-
-    private static final String GOOGLE_PLAY_PACKAGE_NAME = "com.android.vending";
-
-    private static final String MI_PACKAGE_NAME = "com.xiaomi.market";
-
-    private static final String SAMSUNG_GALAXY_APPS_PACKAGE_NAME = "com.sec.android.app.samsungapps";
-
-    private static final String SLIDEME_MARKETPLACE_PACKAGE_NAME = "com.slideme.sam.manager";
-
-    private static final String TENCENT_PACKAGE_NAME = "com.tencent.android.qqdownloader";
-
-    private static final String YANDEX_STORE_PACKAGE_NAME = "com.yandex.store";
-
     private static final String[] BROWSERS_PACKAGES_NAMES = {
             "com.android.chrome",
             "org.mozilla.firefox",
@@ -61,28 +32,6 @@ final class IntentHelper {
             "com.android.browser"
     };
 
-    private static final String[] CHINESE_STORES_PACKAGES_NAMES = {
-            "com.tencent.android.qqdownloader", //腾讯应用宝
-            "com.qihoo.appstore",               //360手机助手
-            "com.xiaomi.market",                //小米应用商店
-            "com.huawei.appmarket",             //华为应用商店
-            "com.baidu.appsearch",              //百度手机助手
-            "com.oppo.market",                  //OPPO应用商店
-            "zte.com.market",                   //中兴应用商店
-            "com.bbk.appstore",                 //VIVO应用商店
-            "com.wandoujia.phoenix2",           //豌豆荚
-            "com.pp.assistant",                 //PP手机助手
-            "com.hiapk.marketpho",              //安智应用商店
-            "com.dragon.android.pandaspace",    //91手机助手
-            "com.yingyonghui.market",           //应用汇
-            "com.tencent.qqpimsecure",          //QQ手机管家
-            "com.mappn.gfan",                   //机锋应用市场
-            "cn.goapk.market",                  //GO市场
-            "com.yulong.android.coolmart",      //宇龙Coolpad应用商店
-            "com.lenovo.leos.appstore",         //联想应用商店
-            "com.coolapk.market"                //cool市场
-    };
-
     private IntentHelper() {
         throw new AssertionError();
     }
@@ -97,6 +46,54 @@ final class IntentHelper {
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
     }
 
+    /**
+     * @param appStore the store type
+     * @return the packages that {@link #createIntentsForStore(Context, int, String)} probes for
+     */
+    @NonNull
+    static String[] getStoreCandidatePackages(final int appStore) {
+        final String[] storesPackagesNames = StoreDescriptor.getOrDefault(appStore).getPackagesNames();
+        return storesPackagesNames == null ? BROWSERS_PACKAGES_NAMES : storesPackagesNames;
+    }
+
+    /**
+     * Describes which of the packages that {@link #createIntentsForStore(Context, int, String)}
+     * probes for are installed, the intents it creates depend on nothing else.
+     *
+     * @param context context
+     * @param appStore the store type
+     * @return the comma separated names of the installed store (or, for a store without app, browser) packages
+     */
+    @NonNull
+    static String getStorePackagesFingerprint(@NonNull final Context context, final int appStore) {
+        final String[] devicePackagesNames = isPackagesExists(context, getStoreCandidatePackages(appStore));
+        final StringBuilder fingerprint = new StringBuilder().append(appStore);
+        if (devicePackagesNames != null) {
+            for (String aDevicePackageName : devicePackagesNames) {
+                fingerprint.append(',').append(aDevicePackageName);
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Resolves every candidate in one pass instead of paying for a failed startActivity
+     * (ActivityManager round trip and exception) per missing store.
+     *
+     * @param context context
+     * @param intents the candidate intents in priority order
+     * @return the index of the first intent an activity can handle, -1 if there is none
+     */
+    static byte getFirstLaunchableIntent(@NonNull final Context context, @NonNull final Intent[] intents) {
+        final PackageManager packageManager = context.getPackageManager();
+        for (byte b = 0; b < intents.length; b++) {
+            if ((intents[b] != null) && (packageManager.resolveActivity(intents[b], PackageManager.MATCH_DEFAULT_ONLY) != null)) {
+                return b;
+            }
+        }
+        return (byte) -1;
+    }
+
     @Nullable
     static Intent[] createIntentsForStore(@NonNull final Context context, final int appStore, @NonNull final String paramName) {
 
@@ -105,52 +102,14 @@ final class IntentHelper {
             return null;
         }
 
+        final StoreDescriptor store = StoreDescriptor.getOrDefault(appStore);
         final byte deviceStoresPackagesNumber;
-        final String[] storesPackagesNames;
+        final String[] storesPackagesNames = store.getPackagesNames();
         final String[] deviceStoresPackagesNames;
         final Intent[] intents;
 
-        boolean needStorePackage = false;
-        boolean hasWebUriIntent = true;
-
-        switch (appStore) {
-            case AMAZON:
-                storesPackagesNames = new String[]{AMAZON_APPSTORE_PACKAGE_NAME};
-                break;
-            case APPLE:
-                storesPackagesNames = null;
-                break;
-            case BAZAAR:
-                storesPackagesNames = new String[]{CAFE_BAZAAR_PACKAGE_NAME};
-                break;
-            case BLACKBERRY:
-                storesPackagesNames = new String[]{BLACKBERRY_WORLD_PACKAGE_NAME};
-                break;
-            case CHINESESTORES:
-                storesPackagesNames = CHINESE_STORES_PACKAGES_NAMES;
-                needStorePackage = true;
-                hasWebUriIntent = false;
-                break;
-            case MI:
-                storesPackagesNames = new String[]{MI_PACKAGE_NAME};
-                break;
-            case SAMSUNG:
-                storesPackagesNames = new String[]{SAMSUNG_GALAXY_APPS_PACKAGE_NAME};
-                needStorePackage = true;
-                break;
-            case SLIDEME:
-                storesPackagesNames = new String[]{SLIDEME_MARKETPLACE_PACKAGE_NAME};
-                break;
-            case TENCENT:
-                storesPackagesNames = new String[]{TENCENT_PACKAGE_NAME};
-                break;
-            case YANDEX:
-                storesPackagesNames = new String[]{YANDEX_STORE_PACKAGE_NAME};
-                needStorePackage = true;
-                break;
-            default:
-                storesPackagesNames = new String[]{GOOGLE_PLAY_PACKAGE_NAME};
-        }
+        final boolean needStorePackage = store.isStorePackageRequired();
+        final boolean hasWebUriIntent = store.hasWebUri();
 
         deviceStoresPackagesNames = storesPackagesNames == null ? null : isPackagesExists(context, storesPackagesNames);
         deviceStoresPackagesNumber = deviceStoresPackagesNames == null ? 0 : (byte) deviceStoresPackagesNames.length;
@@ -158,17 +117,17 @@ final class IntentHelper {
         if (deviceStoresPackagesNumber > 0) {
             intents = hasWebUriIntent ? new Intent[deviceStoresPackagesNumber + 1] : new Intent[deviceStoresPackagesNumber];
             for (byte b = 0; b < deviceStoresPackagesNumber; b++) {
-                intents[b] = new Intent(Intent.ACTION_VIEW, getStoreUri(appStore, paramName));
+                intents[b] = new Intent(Intent.ACTION_VIEW, store.getUri(paramName));
                 setIntentForStore(intents[b]);
                 intents[b].setPackage(deviceStoresPackagesNames[b]);
             }
             if (hasWebUriIntent) {
-                intents[deviceStoresPackagesNumber] = new Intent(Intent.ACTION_VIEW, getStoreWebUri(appStore, paramName));
+                intents[deviceStoresPackagesNumber] = new Intent(Intent.ACTION_VIEW, store.getWebUri(paramName));
             }
         } else {
             if (!needStorePackage) {
-                intents = new Intent[]{new Intent(Intent.ACTION_VIEW, getStoreWebUri(appStore, paramName))};
-                if (appStore == APPLE) {
+                intents = new Intent[]{new Intent(Intent.ACTION_VIEW, store.getWebUri(paramName))};
+                if (storesPackagesNames == null) {
                     final String[] deviceBrowsersPackagesNames = isPackagesExists(context, BROWSERS_PACKAGES_NAMES);
                     if ((deviceBrowsersPackagesNames != null) && (deviceBrowsersPackagesNames.length > 0)) {
                         intents[0].setPackage(deviceBrowsersPackagesNames[0]);
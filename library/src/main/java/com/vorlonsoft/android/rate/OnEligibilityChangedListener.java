@@ -0,0 +1,17 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+/**
+ * Notified on the main thread when {@link AppRate#shouldShowRateDialog()} changes its answer,
+ * so the app can show the rate dialog at a moment it chooses instead of polling.
+ */
+public interface OnEligibilityChangedListener {
+
+    void onEligibilityChanged(final boolean isEligible);
+
+}
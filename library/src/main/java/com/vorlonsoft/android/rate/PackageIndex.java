@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+import static com.vorlonsoft.android.rate.Utils.getMetricsListener;
+
+/**
+ * Per-process index of installed packages.<br>
+ * Each candidate package costs one targeted {@link PackageManager#getApplicationInfo(String, int)}
+ * the first time it's asked for, instead of copying every installed application across Binder.
+ * Results are memoized until a package is added, removed or replaced.
+ */
+final class PackageIndex {
+
+    private static final Map<String, Boolean> presence = new HashMap<>();
+
+    private static boolean isReceiverRegistered = false;
+
+    private PackageIndex() {
+        throw new AssertionError();
+    }
+
+    private static void registerReceiver(final Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        if (applicationContext == null) {
+            return;
+        }
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        applicationContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                final Uri data = intent.getData();
+                invalidate(data == null ? null : data.getSchemeSpecificPart());
+                StoreIntentCache.invalidate();
+            }
+        }, filter);
+        isReceiverRegistered = true;
+    }
+
+    /**
+     * Starts listening to package changes, so that the memoized lookups and the store intents
+     * plan are dropped when a package is added, removed or replaced.
+     *
+     * @param context context
+     */
+    static synchronized void watch(@NonNull final Context context) {
+        if (!isReceiverRegistered) {
+            registerReceiver(context);
+        }
+    }
+
+    /**
+     * Reports every lookup to {@link RateMetricsListener#onPackageLookup(long, boolean)}.
+     *
+     * @param context context
+     * @param packageName the package to look for
+     * @return true if the package is installed on the device
+     */
+    static boolean isInstalled(@NonNull final Context context, @NonNull final String packageName) {
+        final RateMetricsListener metrics = getMetricsListener();
+        final long startNanos = (metrics == null) ? 0L : System.nanoTime();
+        final Boolean isInstalled = getPresence(packageName);
+        final boolean isFound = (isInstalled == null) ? lookUp(context, packageName) : isInstalled;
+        if (metrics != null) {
+            metrics.onPackageLookup(System.nanoTime() - startNanos, isInstalled != null);
+        }
+        return isFound;
+    }
+
+    private static synchronized Boolean getPresence(@NonNull final String packageName) {
+        return presence.get(packageName);
+    }
+
+    private static synchronized boolean lookUp(@NonNull final Context context, @NonNull final String packageName) {
+        watch(context);
+        boolean isFound;
+        try {
+            context.getPackageManager().getApplicationInfo(packageName, 0);
+            isFound = true;
+        } catch (PackageManager.NameNotFoundException e) {
+            isFound = false;
+        }
+        presence.put(packageName, isFound);
+        return isFound;
+    }
+
+    /**
+     * Forgets the memoized presence of {@code packageName}, or of every package if it's null.
+     *
+     * @param packageName the added, removed or replaced package
+     */
+    static synchronized void invalidate(final String packageName) {
+        if (packageName == null) {
+            presence.clear();
+        } else {
+            presence.remove(packageName);
+        }
+    }
+}
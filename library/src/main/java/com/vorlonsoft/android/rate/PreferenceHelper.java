@@ -7,62 +7,198 @@
 package com.vorlonsoft.android.rate;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
-import static com.vorlonsoft.android.rate.Utils.DAY_IN_MILLIS;
-import static com.vorlonsoft.android.rate.Utils.YEAR_IN_DAYS;
+import androidx.annotation.Nullable;
 
+/**
+ * Android adapter of {@link RateStorage}: the state lives in the AppRate {@link android.content.SharedPreferences}
+ * (through {@link PreferenceWriter}) and the custom events in an {@link EventCountStore}.<br>
+ * The named storages share the preferences file and its writer, each keeps its events in its own file.
+ */
 final class PreferenceHelper {
 
     private static final String PREF_FILE_NAME = "androidrate_pref_file";
 
-    private static final String PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES = "androidrate_365_day_period_dialog_launch_times";
+    private static final String EVENTS_FILE_NAME = "androidrate_custom_events";
+
+    private static volatile RateStorage storage = null;
+
+    private static PreferenceWriter writer = null;
+
+    private static final Map<String, RateStorage> namedStorages = new HashMap<>();
+
+    private static boolean isMultiProcessEventCounts = false;
 
     /**
-     * The key prefix for each custom event,
-     * so that there is no clash with existing keys (PREF_KEY_INSTALL_DATE etc.)
+     * Tasks deferred by {@link #deferUntilStateLoaded(RateStorage, Runnable)}, per storage being preloaded
      */
-    private static final String PREF_KEY_CUSTOM_EVENT_PREFIX = "androidrate_custom_event_prefix_";
+    private static final Map<RateStorage, List<Runnable>> preloadPendingTasks = new IdentityHashMap<>();
 
-    private static final String PREF_KEY_DIALOG_FIRST_LAUNCH_TIME = "androidrate_dialog_first_launch_time";
+    private PreferenceHelper() {
+        throw new AssertionError();
+    }
 
-    private static final String PREF_KEY_INSTALL_DATE = "androidrate_install_date";
+    /**
+     * @param context context
+     * @return the storage of the AppRate state, the preferences file is read on first state access
+     */
+    static RateStorage getStorage(final Context context) {
+        RateStorage rateStorage = storage;
+        if (rateStorage == null) {
+            synchronized (PreferenceHelper.class) {
+                rateStorage = storage;
+                if (rateStorage == null) {
+                    rateStorage = new RateStorage(getWriter(context), RateClock.WALL,
+                            new EventCountStore(context, EVENTS_FILE_NAME, isMultiProcessEventCounts));
+                    storage = rateStorage;
+                }
+            }
+        }
+        return rateStorage;
+    }
 
-    private static final String PREF_KEY_IS_AGREE_SHOW_DIALOG = "androidrate_is_agree_show_dialog";
+    /**
+     * @param context context
+     * @param name the storage name, null for the default storage
+     * @return the storage of the AppRate instance named {@code name}
+     */
+    static RateStorage getStorage(final Context context, @Nullable final String name) {
+        if (name == null) {
+            return getStorage(context);
+        }
+        synchronized (PreferenceHelper.class) {
+            RateStorage rateStorage = namedStorages.get(name);
+            if (rateStorage == null) {
+                rateStorage = new RateStorage(new NamespacedKeyValueStore(getWriter(context), name + ':'), RateClock.WALL,
+                        new EventCountStore(context, EVENTS_FILE_NAME + '_' + name, isMultiProcessEventCounts));
+                namedStorages.put(name, rateStorage);
+            }
+            return rateStorage;
+        }
+    }
 
-    private static final String PREF_KEY_LAUNCH_TIMES = "androidrate_launch_times";
+    /**
+     * Called with the class lock held.
+     */
+    private static PreferenceWriter getWriter(final Context context) {
+        if (writer == null) {
+            writer = new PreferenceWriter(context, context.getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE));
+        }
+        return writer;
+    }
 
-    private static final String PREF_KEY_REMIND_INTERVAL = "androidrate_remind_interval";
+    /**
+     * Must be called before the storage is created by {@link #getStorage(Context)}.
+     *
+     * @param isMultiProcess true if the custom events are counted by several processes of the app
+     * @return true if the custom events are counted in the requested mode,
+     *         false if the storage is already created in the other mode
+     */
+    static synchronized boolean setMultiProcessEventCounts(final boolean isMultiProcess) {
+        if ((storage != null) || !namedStorages.isEmpty()) {
+            return isMultiProcessEventCounts == isMultiProcess;
+        }
+        isMultiProcessEventCounts = isMultiProcess;
+        return true;
+    }
 
-    private PreferenceHelper() {
-        throw new AssertionError();
+    /**
+     * Forgets the storages and the event counts mode, the next {@link #getStorage(Context)} creates
+     * them again. Used by the tests, the stored state is left as is.
+     */
+    static synchronized void resetStorages() {
+        storage = null;
+        namedStorages.clear();
+        preloadPendingTasks.clear();
+        isMultiProcessEventCounts = false;
     }
 
-    private static SharedPreferences getPreferences(final Context context) {
-        return context.getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE);
+    /**
+     * Returns the in-memory state, loading it from the preferences file on first use.
+     *
+     * @param context context
+     * @return the state snapshot, coherent with every PreferenceHelper setter
+     */
+    static RateState getState(final Context context) {
+        return getStorage(context).getState();
     }
 
-    private static SharedPreferences.Editor getPreferencesEditor(final Context context) {
-        return getPreferences(context).edit();
+    /**
+     * Starts loading the state of {@code rateStorage} on a background thread.
+     * Does nothing if the state is already loaded or is being preloaded.
+     *
+     * @param rateStorage the storage of an AppRate instance
+     */
+    static void preloadState(final RateStorage rateStorage) {
+        synchronized (PreferenceHelper.class) {
+            if (rateStorage.isLoaded() || preloadPendingTasks.containsKey(rateStorage)) {
+                return;
+            }
+            preloadPendingTasks.put(rateStorage, new ArrayList<Runnable>());
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rateStorage.getState();
+                final List<Runnable> tasks;
+                synchronized (PreferenceHelper.class) {
+                    tasks = preloadPendingTasks.remove(rateStorage);
+                }
+                for (Runnable task : tasks) {
+                    task.run();
+                }
+            }
+        }, "AndroidRate-Preload").start();
     }
 
-    private static void setCurrentDayDialogLaunchTimes(final Context context,
-                                                       String dialogLaunchTimes,
-                                                       final byte currentYear,
-                                                       final short currentDay,
-                                                       final short currentDayCount) {
-        if (currentYear > 1) {
-            for (byte b = 0; b < currentYear - 1; b++) {
-                dialogLaunchTimes = dialogLaunchTimes.replaceAll(":" + currentDay + "y" + b + "-[0-9][0-9]*:", ":");
+    /**
+     * @param rateStorage the storage of an AppRate instance
+     * @return true if a preload of {@code rateStorage} started by {@link #preloadState(RateStorage)} hasn't finished yet
+     */
+    static boolean isStatePreloading(final RateStorage rateStorage) {
+        if (rateStorage.isLoaded()) {
+            return false;
+        }
+        synchronized (PreferenceHelper.class) {
+            return preloadPendingTasks.containsKey(rateStorage);
+        }
+    }
+
+    /**
+     * Queues {@code task} to run on the preload thread of {@code rateStorage} once its state is loaded.
+     *
+     * @param rateStorage the storage of an AppRate instance
+     * @param task the task to defer
+     * @return true if the task was queued, false if no preload is running and the caller should run it now
+     */
+    static boolean deferUntilStateLoaded(final RateStorage rateStorage, final Runnable task) {
+        if (rateStorage.isLoaded()) {
+            return false;
+        }
+        synchronized (PreferenceHelper.class) {
+            final List<Runnable> tasks = preloadPendingTasks.get(rateStorage);
+            if (tasks == null) {
+                return false;
             }
+            tasks.add(task);
+            return true;
         }
-        dialogLaunchTimes = dialogLaunchTimes + currentDay + "y" + currentYear + "-" + currentDayCount + ":";
+    }
 
-        getPreferencesEditor(context)
-                .putString(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES, dialogLaunchTimes)
-                .apply();
+
+    /**
+     * Resets every custom event count to zero in O(1), see {@link EventCountStore#clear()}.
+     *
+     * @param context context
+     */
+    static void clearCustomEventCounts(final Context context) {
+        getStorage(context).clearCustomEventCounts();
     }
 
     /**
@@ -71,102 +207,54 @@ final class PreferenceHelper {
      * @param context context
      */
     static void clearSharedPreferences(final Context context) {
-        getPreferencesEditor(context)
-                .clear()
-                .apply();
+        getStorage(context).clear();
     }
 
     static boolean isFirstLaunch(final Context context) {
-        return getPreferences(context).getLong(PREF_KEY_INSTALL_DATE, 0L) == 0L;
+        return getStorage(context).isFirstLaunch();
     }
 
     static void setFirstLaunchSharedPreferences(final Context context) {
-        final SharedPreferences.Editor preferencesEditor = getPreferencesEditor(context);
-        preferencesEditor.putString(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES, ":0y0-0:");
-        preferencesEditor.putLong(PREF_KEY_DIALOG_FIRST_LAUNCH_TIME, 0L);
-        preferencesEditor.putLong(PREF_KEY_INSTALL_DATE, new Date().getTime());
-        if (getIsAgreeShowDialog(context)) {                          //if (get() == true) set(true); - NOT error!
-            preferencesEditor.putBoolean(PREF_KEY_IS_AGREE_SHOW_DIALOG, true);
-        }
-        preferencesEditor.putInt(PREF_KEY_LAUNCH_TIMES, 1);
-        preferencesEditor.putLong(PREF_KEY_REMIND_INTERVAL, 0L);
-        preferencesEditor.apply();
+        getStorage(context).setFirstLaunch();
     }
 
     static void increment365DayPeriodDialogLaunchTimes(final Context context) {
-        short currentDay = (short) ((new Date().getTime() - getDialogFirstLaunchTime(context)) / DAY_IN_MILLIS);
-        final byte currentYear = (byte) (currentDay / YEAR_IN_DAYS);
-        final String currentDialogLaunchTimes = getPreferences(context).getString(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES, ":0y0-0:");
-
-        if (currentYear > 0) {
-            currentDay = (short) (currentDay % YEAR_IN_DAYS);
-        }
-
-        if (currentDialogLaunchTimes.matches("(.*):" + currentDay + "y" + currentYear + "-[0-9][0-9]*:")) {
-            final short length = (short) currentDialogLaunchTimes.length();
-            String currentDayCount = "" + currentDialogLaunchTimes.charAt(length - 2);
-            for (short s = (short) (length - 3); s > 0; s--) {
-                if (Character.isDigit(currentDialogLaunchTimes.charAt(s))) {
-                    currentDayCount = currentDialogLaunchTimes.charAt(s) + currentDayCount;
-                } else {
-                    break;
-                }
-            }
-            setCurrentDayDialogLaunchTimes(context, currentDialogLaunchTimes, currentYear, currentDay, (short) (Short.valueOf(currentDayCount) + 1));
-        } else {
-            setCurrentDayDialogLaunchTimes(context, currentDialogLaunchTimes, currentYear, currentDay, (short) 1);
-        }
+        getStorage(context).increment365DayPeriodDialogLaunchTimes();
     }
 
     static short get365DayPeriodDialogLaunchTimes(final Context context) {
-        short currentDay = (short) ((new Date().getTime() - getDialogFirstLaunchTime(context)) / DAY_IN_MILLIS);
-        final byte currentYear = (byte) (currentDay / YEAR_IN_DAYS);
-        String dialogLaunchTimes = getPreferences(context).getString(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES, ":0y0-0:");
-
-        dialogLaunchTimes = dialogLaunchTimes.replaceAll(":[0-9][0-9]*" + "y" + currentYear + "-", ":");
-        if (currentYear > 0) {
-            currentDay = (short) (currentDay % YEAR_IN_DAYS);
-            for (short s = currentDay; s < YEAR_IN_DAYS; s++) {
-                dialogLaunchTimes = dialogLaunchTimes.replaceAll(":" + s + "y" + String.valueOf(currentYear - 1) + "-", ":");
-            }
-        }
-        dialogLaunchTimes = dialogLaunchTimes.replaceAll(":[0-9][0-9]*y[0-9][0-9]*-[0-9][0-9]*:", ":");
-        if (dialogLaunchTimes.length() > 2) {
-            dialogLaunchTimes = dialogLaunchTimes.substring(1, dialogLaunchTimes.length() - 1);
-        }
-
-        short dialogLaunchTimesCount = 0;
-        final String[] dialogLaunchTimesSplit = dialogLaunchTimes.split(":");
-        for (String aDialogLaunchTimesSplit : dialogLaunchTimesSplit) {
-            dialogLaunchTimesCount = (short) (dialogLaunchTimesCount + Short.valueOf(aDialogLaunchTimesSplit));
-        }
-
-        return dialogLaunchTimesCount;
+        final long dialogLaunchTimesCount = getStorage(context).get365DayPeriodDialogLaunchTimes();
+        return dialogLaunchTimesCount > Short.MAX_VALUE ? Short.MAX_VALUE : (short) dialogLaunchTimesCount;
     }
 
-    static void setCustomEventCount(final Context context, final String eventName, final short eventCount) {
-        getPreferencesEditor(context)
-                .putInt(PREF_KEY_CUSTOM_EVENT_PREFIX + eventName, eventCount)
-                .apply();
+    static void setCustomEventCount(final Context context, final String eventName, final int eventCount) {
+        getStorage(context).setCustomEventCount(eventName, eventCount);
     }
 
-    static short getCustomEventCount(final Context context, final String eventName) {
-        return (short) getPreferences(context).getInt(PREF_KEY_CUSTOM_EVENT_PREFIX + eventName, 0);
+    /**
+     * Lock-free increment, safe to call from any number of threads at the same time.
+     *
+     * @param context context
+     * @param eventName the custom event name
+     */
+    static void incrementCustomEventCount(final Context context, final String eventName) {
+        getStorage(context).incrementCustomEventCount(eventName);
     }
 
+    static int getCustomEventCount(final Context context, final String eventName) {
+        return getState(context).getCustomEventCount(eventName);
+    }
 
     static void setDialogFirstLaunchTime(final Context context) {
-        getPreferencesEditor(context)
-                .putLong(PREF_KEY_DIALOG_FIRST_LAUNCH_TIME, new Date().getTime())
-                .apply();
+        getStorage(context).setDialogFirstLaunchTime();
     }
 
     static long getDialogFirstLaunchTime(final Context context) {
-        return getPreferences(context).getLong(PREF_KEY_DIALOG_FIRST_LAUNCH_TIME, 0L);
+        return getState(context).getDialogFirstLaunchTime();
     }
 
     static long getInstallDate(final Context context) {
-        return getPreferences(context).getLong(PREF_KEY_INSTALL_DATE, 0L);
+        return getState(context).getInstallDate();
     }
 
     /**
@@ -177,33 +265,36 @@ final class PreferenceHelper {
      * @param isAgree agree with showing rate dialog
      */
     static void setIsAgreeShowDialog(final Context context, final boolean isAgree) {
-        getPreferencesEditor(context)
-                .putBoolean(PREF_KEY_IS_AGREE_SHOW_DIALOG, isAgree)
-                .apply();
+        getStorage(context).setAgreeShowDialog(isAgree);
     }
 
     static boolean getIsAgreeShowDialog(final Context context) {
-        return getPreferences(context).getBoolean(PREF_KEY_IS_AGREE_SHOW_DIALOG, true);
+        return getState(context).isAgreeShowDialog();
+    }
+
+    static void setLaunchTimes(final Context context, final int launchTimes) {
+        getStorage(context).setLaunchTimes(launchTimes);
     }
 
-    static void setLaunchTimes(final Context context, final short launchTimes) {
-        getPreferencesEditor(context)
-                .putInt(PREF_KEY_LAUNCH_TIMES, launchTimes)
-                .apply();
+    /**
+     * Lock-free increment, safe to call from any number of threads at the same time.
+     *
+     * @param context context
+     */
+    static void incrementLaunchTimes(final Context context) {
+        getStorage(context).incrementLaunchTimes();
     }
 
-    static short getLaunchTimes(final Context context) {
-        return (short) getPreferences(context).getInt(PREF_KEY_LAUNCH_TIMES, 0);
+    static int getLaunchTimes(final Context context) {
+        return getState(context).getLaunchTimes();
     }
 
     static void setRemindInterval(final Context context) {
-        getPreferencesEditor(context)
-                .putLong(PREF_KEY_REMIND_INTERVAL, new Date().getTime())
-                .apply();
+        getStorage(context).setRemindInterval();
     }
 
     static long getRemindInterval(final Context context) {
-        return getPreferences(context).getLong(PREF_KEY_REMIND_INTERVAL, 0L);
+        return getState(context).getRemindInterval();
     }
 
-}
\ No newline at end of file
+}
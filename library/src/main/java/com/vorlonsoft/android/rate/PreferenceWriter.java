@@ -0,0 +1,370 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.Utils.TAG;
+import static com.vorlonsoft.android.rate.Utils.getMetricsListener;
+
+/**
+ * The {@link KeyValueStore} of AppRate: a write-behind layer over its {@link SharedPreferences}.<br>
+ * Mutations are coalesced in memory (the last value for a key wins) and flushed in one
+ * {@link SharedPreferences.Editor#commit()} on a dedicated background thread when
+ * {@link #MAX_PENDING_KEYS} keys are pending, when the oldest pending mutation is
+ * {@link #MAX_PENDING_AGE_MILLIS} old, when an Activity pauses or when the app is trimmed.
+ * The background commit never goes through QueuedWork, so Activity onPause/onStop don't wait for it.
+ */
+final class PreferenceWriter implements KeyValueStore {
+
+    private static final byte MAX_PENDING_KEYS = (byte) 16;
+
+    private static final long MAX_PENDING_AGE_MILLIS = 2000L;
+
+    /**
+     * Marks a pending removal of a key
+     */
+    private static final Object REMOVED = new Object();
+
+    private final SharedPreferences preferences;
+
+    /**
+     * Serializes commits so that an older snapshot can never overwrite a newer one
+     */
+    private final Object commitLock = new Object();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            commit();
+        }
+    };
+
+    private Map<String, Object> pending = new HashMap<>();
+
+    private boolean isClearPending = false;
+
+    /**
+     * The mutations of the commit in progress, null between commits
+     */
+    private Map<String, Object> committing = null;
+
+    private boolean isClearCommitting = false;
+
+    private Handler handler = null;
+
+    PreferenceWriter(@NonNull final Context context, @NonNull final SharedPreferences preferences) {
+        this.preferences = preferences;
+        registerFlushTriggers(context.getApplicationContext());
+    }
+
+    @SuppressLint("ObsoleteSdkInt")
+    private void registerFlushTriggers(final Context applicationContext) {
+        if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) && (applicationContext != null)) {
+            registerFlushCallbacks(applicationContext);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerFlushCallbacks(final Context applicationContext) {
+        applicationContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(final int level) {
+                flush();
+            }
+
+            @Override
+            public void onConfigurationChanged(final Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                flush();
+            }
+        });
+        if (applicationContext instanceof Application) {
+            ((Application) applicationContext).registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+                @Override
+                public void onActivityCreated(final Activity activity, final Bundle savedInstanceState) {
+                }
+
+                @Override
+                public void onActivityStarted(final Activity activity) {
+                }
+
+                @Override
+                public void onActivityResumed(final Activity activity) {
+                }
+
+                @Override
+                public void onActivityPaused(final Activity activity) {
+                    flush();
+                }
+
+                @Override
+                public void onActivityStopped(final Activity activity) {
+                }
+
+                @Override
+                public void onActivitySaveInstanceState(final Activity activity, final Bundle outState) {
+                }
+
+                @Override
+                public void onActivityDestroyed(final Activity activity) {
+                }
+            });
+        }
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            final HandlerThread handlerThread = new HandlerThread("AndroidRate-PreferenceWriter", Process.THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            handler = new Handler(handlerThread.getLooper());
+        }
+        return handler;
+    }
+
+    private synchronized void put(final String key, final Object value) {
+        final boolean wasEmpty = pending.isEmpty() && !isClearPending;
+        pending.put(key, value);
+        scheduleFlush(wasEmpty);
+    }
+
+    /**
+     * Called with the lock held after a mutation is added to the pending ones.
+     */
+    private void scheduleFlush(final boolean wasEmpty) {
+        if (pending.size() >= MAX_PENDING_KEYS) {
+            getHandler().removeCallbacks(flushRunnable);
+            getHandler().post(flushRunnable);
+        } else if (wasEmpty) {
+            getHandler().postDelayed(flushRunnable, MAX_PENDING_AGE_MILLIS);
+        }
+    }
+
+    /**
+     * Returns the stored values with the pending mutations and the ones of a commit in progress
+     * laid over them, so a value read back is the last one put even before it's flushed.
+     */
+    @NonNull
+    @Override
+    public Map<String, ?> getAll() {
+        final RateMetricsListener metrics = getMetricsListener();
+        final long startNanos = metrics == null ? 0L : System.nanoTime();
+        final Map<String, Object> values;
+        synchronized (this) {
+            values = new HashMap<String, Object>(preferences.getAll());
+            if (committing != null) {
+                overlay(values, committing, isClearCommitting);
+            }
+            overlay(values, pending, isClearPending);
+        }
+        if (metrics != null) {
+            metrics.onPreferencesLoaded(System.nanoTime() - startNanos);
+        }
+        return values;
+    }
+
+    private static void overlay(@NonNull final Map<String, Object> values,
+                                @NonNull final Map<String, Object> mutations, final boolean isClear) {
+        if (isClear) {
+            values.clear();
+        }
+        for (Map.Entry<String, Object> entry : mutations.entrySet()) {
+            final Object value = entry.getValue();
+            if (value == REMOVED) {
+                values.remove(entry.getKey());
+            } else if (value instanceof RateCounter) {
+                // get() rather than snapshot(): the counter is still dirty until it's written
+                values.put(entry.getKey(), ((RateCounter) value).get());
+            } else if (value instanceof Counter) {
+                values.put(entry.getKey(), ((Counter) value).snapshot());
+            } else if (value instanceof Encoded) {
+                values.put(entry.getKey(), ((Encoded) value).encode());
+            } else {
+                values.put(entry.getKey(), value);
+            }
+        }
+    }
+
+    @Override
+    public void putBoolean(@NonNull final String key, final boolean value) {
+        put(key, value);
+    }
+
+    @Override
+    public void putInt(@NonNull final String key, final int value) {
+        put(key, value);
+    }
+
+    @Override
+    public void putLong(@NonNull final String key, final long value) {
+        put(key, value);
+    }
+
+    /**
+     * Schedules {@code counter} for writing, its value is read when the pending mutations are committed.
+     */
+    @Override
+    public void putCounter(@NonNull final String key, @NonNull final Counter counter) {
+        put(key, counter);
+    }
+
+    /**
+     * Schedules {@code encoded} for writing, it's encoded when the pending mutations are committed.
+     */
+    @Override
+    public void putEncoded(@NonNull final String key, @NonNull final Encoded encoded) {
+        put(key, encoded);
+    }
+
+    @Override
+    public void putString(@NonNull final String key, @Nullable final String value) {
+        put(key, value == null ? REMOVED : value);
+    }
+
+    @Override
+    public void remove(@NonNull final String key) {
+        put(key, REMOVED);
+    }
+
+    /**
+     * The values are added to the pending mutations at once, so they are committed by the same flush.
+     */
+    @Override
+    public synchronized void putAll(@NonNull final Map<String, ?> values) {
+        final boolean wasEmpty = pending.isEmpty() && !isClearPending;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            pending.put(entry.getKey(), entry.getValue() == null ? REMOVED : entry.getValue());
+        }
+        scheduleFlush(wasEmpty);
+    }
+
+    /**
+     * Drops every pending mutation and clears the preferences file on the next flush.
+     */
+    @Override
+    public synchronized void clear() {
+        pending.clear();
+        isClearPending = true;
+        getHandler().removeCallbacks(flushRunnable);
+        getHandler().post(flushRunnable);
+    }
+
+    /**
+     * Schedules the pending mutations to be written now on the background thread.
+     */
+    synchronized void flush() {
+        if (!pending.isEmpty() || isClearPending) {
+            getHandler().removeCallbacks(flushRunnable);
+            getHandler().post(flushRunnable);
+        }
+    }
+
+    /**
+     * Puts the mutations of a failed commit back under the pending ones: a newer value of a key
+     * or a newer clear wins over them. Retried after {@link #MAX_PENDING_AGE_MILLIS}.
+     */
+    private synchronized void requeue(@NonNull final Map<String, Object> failed, final boolean isClear) {
+        if (!isClearPending) {
+            for (Map.Entry<String, Object> entry : failed.entrySet()) {
+                if (!pending.containsKey(entry.getKey())) {
+                    pending.put(entry.getKey(), entry.getValue());
+                }
+            }
+            isClearPending = isClear;
+        }
+        getHandler().removeCallbacks(flushRunnable);
+        getHandler().postDelayed(flushRunnable, MAX_PENDING_AGE_MILLIS);
+    }
+
+    /**
+     * Synchronously writes the pending mutations on the calling thread,
+     * use it for the state that must be durable before returning.
+     *
+     * @return true if the new values were successfully written to persistent storage,
+     *         if false they are pending again and retried later
+     */
+    @Override
+    public boolean commit() {
+        synchronized (commitLock) {
+            final Map<String, Object> toWrite;
+            final boolean isClear;
+            synchronized (this) {
+                if (pending.isEmpty() && !isClearPending) {
+                    return true;
+                }
+                toWrite = pending;
+                isClear = isClearPending;
+                pending = new HashMap<>();
+                isClearPending = false;
+                committing = toWrite;
+                isClearCommitting = isClear;
+                if (handler != null) {
+                    handler.removeCallbacks(flushRunnable);
+                }
+            }
+            final RateMetricsListener metrics = getMetricsListener();
+            final long startNanos = metrics == null ? 0L : System.nanoTime();
+            final SharedPreferences.Editor editor = preferences.edit();
+            if (isClear) {
+                editor.clear();
+            }
+            for (Map.Entry<String, Object> entry : toWrite.entrySet()) {
+                final Object value = entry.getValue();
+                if (value == REMOVED) {
+                    editor.remove(entry.getKey());
+                } else if (value instanceof Boolean) {
+                    editor.putBoolean(entry.getKey(), (Boolean) value);
+                } else if (value instanceof Integer) {
+                    editor.putInt(entry.getKey(), (Integer) value);
+                } else if (value instanceof Long) {
+                    editor.putLong(entry.getKey(), (Long) value);
+                } else if (value instanceof Counter) {
+                    editor.putInt(entry.getKey(), ((Counter) value).snapshot());
+                } else if (value instanceof Encoded) {
+                    editor.putString(entry.getKey(), ((Encoded) value).encode());
+                } else {
+                    editor.putString(entry.getKey(), (String) value);
+                }
+            }
+            final boolean isCommitted = editor.commit();
+            synchronized (this) {
+                committing = null;
+                isClearCommitting = false;
+                if (!isCommitted) {
+                    Log.w(TAG, "Failed to write AndroidRate preferences, retrying later");
+                    requeue(toWrite, isClear);
+                }
+            }
+            if (metrics != null) {
+                metrics.onPreferencesFlushed(System.nanoTime() - startNanos, isCommitted);
+            }
+            return isCommitted;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.Intent;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Receives the timings and outcomes of the AppRate operations, see {@link AppRate#setMetricsListener(RateMetricsListener)}.<br>
+ * Durations are in nanoseconds. Callbacks are invoked synchronously on the thread that ran the
+ * operation, which may be the main thread or an AndroidRate background thread, so keep them short.
+ */
+public interface RateMetricsListener {
+
+    /**
+     * @param durationNanos the duration of {@link AppRate#monitor()}
+     */
+    void onMonitor(final long durationNanos);
+
+    /**
+     * @param durationNanos the duration of {@link AppRate#shouldShowRateDialog()}
+     * @param rejectedBy the condition that wasn't met, null if the dialog should be shown
+     */
+    void onShouldShowRateDialog(final long durationNanos, @Nullable final RateCondition rejectedBy);
+
+    /**
+     * @param durationNanos the duration of the AppRate preferences file read
+     */
+    void onPreferencesLoaded(final long durationNanos);
+
+    /**
+     * @param durationNanos the duration of the AppRate preferences file write
+     * @param isCommitted true if the new values were successfully written to persistent storage
+     */
+    void onPreferencesFlushed(final long durationNanos, final boolean isCommitted);
+
+    /**
+     * @param durationNanos the duration of {@link DialogManager#createDialog()}
+     * @param isCreated false if the rate dialog can't be created
+     */
+    void onDialogCreated(final long durationNanos, final boolean isCreated);
+
+    /**
+     * @param durationNanos the time to get the store intents and find the first launchable one
+     * @param intentsNumber the number of store intents, 0 if they can't be created
+     */
+    void onStoreIntentResolved(final long durationNanos, final int intentsNumber);
+
+    /**
+     * @param intent the launched store intent, null if no store was launched
+     * @param intentIndex the index of {@code intent} within the store intents, 0 for the primary one
+     *                    and greater for a fallback, -1 if no store was launched
+     */
+    void onStoreLaunched(@Nullable final Intent intent, final int intentIndex);
+
+    /**
+     * @param durationNanos the duration of an installed package lookup
+     * @param isCached true if it was answered from the package index, false if it went to the PackageManager
+     */
+    void onPackageLookup(final long durationNanos, final boolean isCached);
+
+    /**
+     * Empty implementation, override the callbacks you need.
+     */
+    class Adapter implements RateMetricsListener {
+
+        @Override
+        public void onMonitor(final long durationNanos) {
+        }
+
+        @Override
+        public void onShouldShowRateDialog(final long durationNanos, @Nullable final RateCondition rejectedBy) {
+        }
+
+        @Override
+        public void onPreferencesLoaded(final long durationNanos) {
+        }
+
+        @Override
+        public void onPreferencesFlushed(final long durationNanos, final boolean isCommitted) {
+        }
+
+        @Override
+        public void onDialogCreated(final long durationNanos, final boolean isCreated) {
+        }
+
+        @Override
+        public void onStoreIntentResolved(final long durationNanos, final int intentsNumber) {
+        }
+
+        @Override
+        public void onStoreLaunched(@Nullable final Intent intent, final int intentIndex) {
+        }
+
+        @Override
+        public void onPackageLookup(final long durationNanos, final boolean isCached) {
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.StoreType.AMAZON;
+import static com.vorlonsoft.android.rate.StoreType.APPLE;
+import static com.vorlonsoft.android.rate.StoreType.BAZAAR;
+import static com.vorlonsoft.android.rate.StoreType.BLACKBERRY;
+import static com.vorlonsoft.android.rate.StoreType.CHINESESTORES;
+import static com.vorlonsoft.android.rate.StoreType.GOOGLEPLAY;
+import static com.vorlonsoft.android.rate.StoreType.MI;
+import static com.vorlonsoft.android.rate.StoreType.OTHER;
+import static com.vorlonsoft.android.rate.StoreType.SAMSUNG;
+import static com.vorlonsoft.android.rate.StoreType.SLIDEME;
+import static com.vorlonsoft.android.rate.StoreType.TENCENT;
+import static com.vorlonsoft.android.rate.StoreType.YANDEX;
+
+/**
+ * How to open the app page of a store: the store app URI and web URI prefixes, the store app
+ * packages to probe for, and whether the app page is addressed by an application ID instead of the package name.<br>
+ * The built-in stores are indexed by their {@link StoreType} constant, others can be added with
+ * {@link AppRate#registerStore(int, StoreDescriptor)}.
+ */
+public final class StoreDescriptor {
+
+    private static final String[] CHINESE_STORES_PACKAGES_NAMES = {
+            "com.tencent.android.qqdownloader", //腾讯应用宝
+            "com.qihoo.appstore",               //360手机助手
+            "com.xiaomi.market",                //小米应用商店
+            "com.huawei.appmarket",             //华为应用商店
+            "com.baidu.appsearch",              //百度手机助手
+            "com.oppo.market",                  //OPPO应用商店
+            "zte.com.market",                   //中兴应用商店
+            "com.bbk.appstore",                 //VIVO应用商店
+            "com.wandoujia.phoenix2",           //豌豆荚
+            "com.pp.assistant",                 //PP手机助手
+            "com.hiapk.marketpho",              //安智应用商店
+            "com.dragon.android.pandaspace",    //91手机助手
+            "com.yingyonghui.market",           //应用汇
+            "com.tencent.qqpimsecure",          //QQ手机管家
+            "com.mappn.gfan",                   //机锋应用市场
+            "cn.goapk.market",                  //GO市场
+            "com.yulong.android.coolmart",      //宇龙Coolpad应用商店
+            "com.lenovo.leos.appstore",         //联想应用商店
+            "com.coolapk.market"                //cool市场
+    };
+
+    /**
+     * Copy-on-write, indexed by the store type
+     */
+    private static volatile StoreDescriptor[] stores = new StoreDescriptor[OTHER + 1];
+
+    static {
+        stores[AMAZON] = new StoreDescriptor("amzn://apps/android?p=",
+                "https://www.amazon.com/gp/mas/dl/android?p=",
+                new String[]{"com.amazon.venezia"}, false, false);
+        stores[APPLE] = new StoreDescriptor(null,
+                "https://itunes.apple.com/app/id",
+                null, false, true);
+        stores[BAZAAR] = new StoreDescriptor("bazaar://details?id=",
+                "https://cafebazaar.ir/app/",
+                new String[]{"com.farsitel.bazaar"}, false, false);
+        stores[BLACKBERRY] = new StoreDescriptor("appworld://content/",
+                "https://appworld.blackberry.com/webstore/content/",
+                new String[]{"net.rim.bb.appworld"}, false, true);
+        stores[CHINESESTORES] = new StoreDescriptor("market://details?id=",
+                null,
+                CHINESE_STORES_PACKAGES_NAMES, true, false);
+        stores[GOOGLEPLAY] = new StoreDescriptor("market://details?id=",
+                "https://play.google.com/store/apps/details?id=",
+                new String[]{"com.android.vending"}, false, false);
+        stores[MI] = new StoreDescriptor("market://details?id=",
+                "http://app.xiaomi.com/details?id=",
+                new String[]{"com.xiaomi.market"}, false, false);
+        stores[SAMSUNG] = new StoreDescriptor("samsungapps://ProductDetail/",
+                "https://apps.samsung.com/appquery/appDetail.as?appId=",
+                new String[]{"com.sec.android.app.samsungapps"}, true, false);
+        stores[SLIDEME] = new StoreDescriptor("sam://details?id=",
+                "http://slideme.org/app/",
+                new String[]{"com.slideme.sam.manager"}, false, false);
+        stores[TENCENT] = new StoreDescriptor("market://details?id=",
+                "http://a.app.qq.com/o/simple.jsp?pkgname=",
+                new String[]{"com.tencent.android.qqdownloader"}, false, false);
+        stores[YANDEX] = new StoreDescriptor("yastore://details?id=",
+                "https://store.yandex.com/apps/details?id=",
+                new String[]{"com.yandex.store"}, true, false);
+    }
+
+    private final String uriPrefix;
+
+    private final String webUriPrefix;
+
+    private final String[] packagesNames;
+
+    private final boolean isStorePackageRequired;
+
+    private final boolean isApplicationIdRequired;
+
+    /**
+     * The parameter the memoized URIs were built for
+     */
+    private String paramName = null;
+
+    private Uri uri = null;
+
+    private Uri webUri = null;
+
+    /**
+     * @param uriPrefix the store app URI without the package name or application ID,
+     *                  null if there is none, required with {@code packagesNames}
+     * @param webUriPrefix the web (http/https) URI without the package name or application ID,
+     *                     null if there is none, required unless the store app is
+     * @param packagesNames the store app packages in priority order,
+     *                      null to open the web URI in the first installed browser
+     * @param isStorePackageRequired true if the web URI can't be opened without the store app
+     * @param isApplicationIdRequired true if the app page is addressed by an application ID
+     *                                set with {@link AppRate#setRegisteredStoreType(int, long)}
+     * @throws IllegalArgumentException if a prefix or a package name is empty,
+     *                                  or if the app page can't be opened with the given prefixes
+     */
+    public StoreDescriptor(@Nullable final String uriPrefix,
+                           @Nullable final String webUriPrefix,
+                           @Nullable final String[] packagesNames,
+                           final boolean isStorePackageRequired,
+                           final boolean isApplicationIdRequired) {
+        checkPrefix("uriPrefix", uriPrefix);
+        checkPrefix("webUriPrefix", webUriPrefix);
+        if (packagesNames == null) {
+            if (webUriPrefix == null) {
+                throw new IllegalArgumentException("StoreDescriptor: 'webUriPrefix' must be != null when 'packagesNames' == null");
+            }
+            if (isStorePackageRequired) {
+                throw new IllegalArgumentException("StoreDescriptor: 'isStorePackageRequired' must be false when 'packagesNames' == null");
+            }
+        } else {
+            if (uriPrefix == null) {
+                throw new IllegalArgumentException("StoreDescriptor: 'uriPrefix' must be != null when 'packagesNames' != null");
+            }
+            if (packagesNames.length == 0) {
+                throw new IllegalArgumentException("StoreDescriptor: 'packagesNames' must be null or not empty");
+            }
+            for (String packageName : packagesNames) {
+                if ((packageName == null) || (packageName.length() == 0)) {
+                    throw new IllegalArgumentException("StoreDescriptor: 'packagesNames' must not contain null or empty package names");
+                }
+            }
+            if ((webUriPrefix == null) && !isStorePackageRequired) {
+                throw new IllegalArgumentException("StoreDescriptor: 'webUriPrefix' must be != null when the store app isn't required");
+            }
+        }
+        this.uriPrefix = uriPrefix;
+        this.webUriPrefix = webUriPrefix;
+        this.packagesNames = packagesNames == null ? null : packagesNames.clone();
+        this.isStorePackageRequired = isStorePackageRequired;
+        this.isApplicationIdRequired = isApplicationIdRequired;
+    }
+
+    private static void checkPrefix(@NonNull final String name, @Nullable final String prefix) {
+        if ((prefix != null) && (prefix.length() == 0)) {
+            throw new IllegalArgumentException("StoreDescriptor: '" + name + "' must be null or not empty");
+        }
+    }
+
+    /**
+     * @param storeType a {@link StoreType} constant or a registered store type
+     * @return the store descriptor, null for INTENT, OTHER and unknown store types
+     */
+    @Nullable
+    static StoreDescriptor get(final int storeType) {
+        final StoreDescriptor[] currentStores = stores;
+        return (storeType >= 0) && (storeType < currentStores.length) ? currentStores[storeType] : null;
+    }
+
+    /**
+     * @return the store descriptor, Google Play for INTENT, OTHER and unknown store types
+     */
+    @NonNull
+    static StoreDescriptor getOrDefault(final int storeType) {
+        final StoreDescriptor store = get(storeType);
+        return store == null ? stores[GOOGLEPLAY] : store;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    static synchronized void register(final int storeType, @NonNull final StoreDescriptor store) {
+        if (store == null) {
+            throw new IllegalArgumentException("registerStore(int, StoreDescriptor): 'store' must be != null");
+        }
+        if (storeType <= OTHER) {
+            throw new IllegalArgumentException("Store type " + storeType + " is reserved, use a value greater than StoreType.OTHER");
+        }
+        final StoreDescriptor[] newStores = new StoreDescriptor[Math.max(stores.length, storeType + 1)];
+        System.arraycopy(stores, 0, newStores, 0, stores.length);
+        newStores[storeType] = store;
+        stores = newStores;
+    }
+
+    @Nullable
+    String[] getPackagesNames() {
+        return packagesNames;
+    }
+
+    boolean isStorePackageRequired() {
+        return isStorePackageRequired;
+    }
+
+    boolean isApplicationIdRequired() {
+        return isApplicationIdRequired;
+    }
+
+    boolean hasWebUri() {
+        return webUriPrefix != null;
+    }
+
+    private void memoize(@NonNull final String paramName) {
+        if (!paramName.equals(this.paramName)) {
+            this.paramName = paramName;
+            uri = uriPrefix == null ? null : Uri.parse(uriPrefix + paramName);
+            webUri = webUriPrefix == null ? null : Uri.parse(webUriPrefix + paramName);
+        }
+    }
+
+    /**
+     * @return the store app URI of the app page, null if the store has none
+     */
+    @Nullable
+    synchronized Uri getUri(@NonNull final String paramName) {
+        memoize(paramName);
+        return uri;
+    }
+
+    /**
+     * @return the web URI of the app page, null if the store has none
+     */
+    @Nullable
+    synchronized Uri getWebUri(@NonNull final String paramName) {
+        memoize(paramName);
+        return webUri;
+    }
+}
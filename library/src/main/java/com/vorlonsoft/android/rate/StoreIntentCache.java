@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.IntentHelper.createIntentsForStore;
+import static com.vorlonsoft.android.rate.IntentHelper.getStoreCandidatePackages;
+import static com.vorlonsoft.android.rate.IntentHelper.getStorePackagesFingerprint;
+import static com.vorlonsoft.android.rate.StoreType.INTENT;
+import static com.vorlonsoft.android.rate.StoreType.OTHER;
+import static com.vorlonsoft.android.rate.Utils.TAG;
+import static com.vorlonsoft.android.rate.Utils.getBackgroundHandler;
+
+/**
+ * Ready-made store intents for the positive button, one plan per store type and package name.<br>
+ * A plan is computed on the AndroidRate worker thread when the store type is set and persisted
+ * with the package state it was built from. Since Android O that state is the boot count and the
+ * sequence number of the package changes, so a persisted plan is validated with one
+ * {@link PackageManager#getChangedPackages(int)} call instead of a lookup per store package;
+ * older releases compare the installed store packages. Plans are rebuilt when a package is added,
+ * removed or replaced. The click handler only starts an activity.
+ */
+final class StoreIntentCache {
+
+    private static final String PREF_FILE_NAME = "androidrate_store_intents_file";
+
+    private static final char SEPARATOR = '\n';
+
+    /**
+     * Starts the header of a plan validated by the package changes since Android O
+     */
+    private static final char CHANGES_STAMP_PREFIX = 's';
+
+    private static final Map<String, Intent[]> plans = new HashMap<>();
+
+    private static Context planContext = null;
+
+    private static StoreOptions planStoreOptions = null;
+
+    private StoreIntentCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @return the package name or the application ID the store intents are created for, null if unknown
+     */
+    @Nullable
+    private static String getParamName(@NonNull final Context context, @NonNull final StoreOptions storeOptions) {
+        final StoreDescriptor store = StoreDescriptor.get(storeOptions.getStoreType());
+        if ((store != null) && store.isApplicationIdRequired()) {
+            return storeOptions.getApplicationId();
+        }
+        final String packageName = context.getPackageName();
+        return (packageName != null) && (packageName.hashCode() != "".hashCode()) ? packageName : null;
+    }
+
+    @NonNull
+    private static String getPlanKey(final int storeType, @NonNull final String paramName) {
+        return storeType + ":" + paramName;
+    }
+
+    /**
+     * @return the boot count and the current sequence number of the package changes,
+     *         null below Android O or if the boot count is unknown
+     */
+    @Nullable
+    private static String getChangesStamp(@NonNull final Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return null;
+        }
+        final int bootCount = Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+        if (bootCount < 0) {
+            return null;
+        }
+        final ChangedPackages changedPackages = context.getPackageManager().getChangedPackages(0);
+        return CHANGES_STAMP_PREFIX + String.valueOf(bootCount) + ':' +
+                (changedPackages == null ? 0 : changedPackages.getSequenceNumber());
+    }
+
+    /**
+     * @return the header the plan is persisted with: the package changes stamp if there is one,
+     *         otherwise the fingerprint of the installed store packages
+     */
+    @NonNull
+    private static String getHeader(@NonNull final Context context, final int storeType) {
+        final String changesStamp = getChangesStamp(context);
+        return changesStamp == null ? getStorePackagesFingerprint(context, storeType) : changesStamp;
+    }
+
+    /**
+     * @return true if none of the store candidate packages were added, removed or replaced
+     *         since the plan with {@code header} was built
+     */
+    private static boolean isValid(@NonNull final Context context, final int storeType, @NonNull final String header) {
+        if ((header.length() == 0) || (header.charAt(0) != CHANGES_STAMP_PREFIX)) {
+            return (getChangesStamp(context) == null) && header.equals(getStorePackagesFingerprint(context, storeType));
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return false;
+        }
+        final int bootCountEnd = header.indexOf(':');
+        final int bootCount = Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+        final int sequenceNumber;
+        try {
+            if ((bootCountEnd < 0) || (bootCount != Integer.parseInt(header.substring(1, bootCountEnd)))) {
+                return false;
+            }
+            sequenceNumber = Integer.parseInt(header.substring(bootCountEnd + 1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        final ChangedPackages changedPackages = context.getPackageManager().getChangedPackages(sequenceNumber);
+        if (changedPackages == null) {
+            return true;
+        }
+        final List<String> candidatePackages = Arrays.asList(getStoreCandidatePackages(storeType));
+        for (String changedPackage : changedPackages.getPackageNames()) {
+            if (candidatePackages.contains(changedPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Intent[] decode(@NonNull final Context context, final int storeType, @NonNull final String encoded) {
+        final int headerEnd = encoded.indexOf(SEPARATOR);
+        if ((headerEnd < 0) || !isValid(context, storeType, encoded.substring(0, headerEnd))) {
+            return null;
+        }
+        final String[] uris = encoded.substring(headerEnd + 1).split(String.valueOf(SEPARATOR));
+        final Intent[] intents = new Intent[uris.length];
+        try {
+            for (int i = 0; i < uris.length; i++) {
+                intents[i] = Intent.parseUri(uris[i], Intent.URI_INTENT_SCHEME);
+            }
+        } catch (URISyntaxException e) {
+            Log.w(TAG, "Failed to restore the cached store intents", e);
+            return null;
+        }
+        return intents;
+    }
+
+    @NonNull
+    private static String encode(@NonNull final Intent[] intents, @NonNull final String header) {
+        final StringBuilder encoded = new StringBuilder(header);
+        for (Intent intent : intents) {
+            encoded.append(SEPARATOR).append(intent.toUri(Intent.URI_INTENT_SCHEME));
+        }
+        return encoded.toString();
+    }
+
+    private static synchronized boolean hasPlan(final String key) {
+        return plans.containsKey(key);
+    }
+
+    private static synchronized void setPlan(final String key, final Intent[] intents) {
+        plans.put(key, intents);
+    }
+
+    /**
+     * Runs on the worker thread: reuses the persisted plan if the store packages haven't changed
+     * since it was built, otherwise builds a new one and persists it.
+     */
+    private static void computePlan(@NonNull final Context context, final int storeType, @NonNull final String paramName) {
+        final String key = getPlanKey(storeType, paramName);
+        final SharedPreferences preferences = context.getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE);
+        final String encoded = preferences.getString(key, null);
+        Intent[] intents = encoded == null ? null : decode(context, storeType, encoded);
+        if (intents == null) {
+            // the header is taken first, so a change while the intents are built invalidates them
+            final String header = getHeader(context, storeType);
+            intents = createIntentsForStore(context, storeType, paramName);
+            if ((intents != null) && (intents.length > 0)) {
+                // commit() on the worker thread, apply() would be waited for in onPause/onStop
+                preferences.edit()
+                        .putString(key, encode(intents, header))
+                        .commit();
+            }
+        }
+        setPlan(key, intents);
+    }
+
+    /**
+     * Computes the store intents plan in the background.
+     *
+     * @param context context
+     * @param storeOptions the store options the plan is built for
+     */
+    static void prepare(@NonNull final Context context, @NonNull final StoreOptions storeOptions) {
+        final int storeType = storeOptions.getStoreType();
+        if ((storeType == INTENT) || (storeType == OTHER)) {
+            return;
+        }
+        final Context applicationContext = context.getApplicationContext();
+        final String paramName = getParamName(applicationContext, storeOptions);
+        if (paramName == null) {
+            return;
+        }
+        synchronized (StoreIntentCache.class) {
+            planContext = applicationContext;
+            planStoreOptions = storeOptions;
+        }
+        getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                PackageIndex.watch(applicationContext);
+                if (!hasPlan(getPlanKey(storeType, paramName))) {
+                    computePlan(applicationContext, storeType, paramName);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the store intents for the positive button, from the plan if it's ready,
+     * otherwise they are built synchronously.
+     *
+     * @param context context
+     * @param storeOptions the store options
+     * @return the intents to try in order or null if they can't be created
+     */
+    @Nullable
+    static Intent[] getIntents(@NonNull final Context context, @NonNull final StoreOptions storeOptions) {
+        final int storeType = storeOptions.getStoreType();
+        if ((storeType == INTENT) || (storeType == OTHER)) {
+            return storeOptions.getIntents();
+        }
+        final String paramName = getParamName(context, storeOptions);
+        if (paramName == null) {
+            Log.w(TAG, "Failed to rate app, can't get app package name");
+            return null;
+        }
+        final String key = getPlanKey(storeType, paramName);
+        synchronized (StoreIntentCache.class) {
+            if (plans.containsKey(key)) {
+                return plans.get(key);
+            }
+        }
+        final Intent[] intents = createIntentsForStore(context, storeType, paramName);
+        setPlan(key, intents);
+        return intents;
+    }
+
+    /**
+     * Drops the plans after a package change and rebuilds the last prepared one in the background.
+     */
+    static void invalidate() {
+        final Context context;
+        final StoreOptions storeOptions;
+        synchronized (StoreIntentCache.class) {
+            plans.clear();
+            context = planContext;
+            storeOptions = planStoreOptions;
+        }
+        if ((context != null) && (storeOptions != null)) {
+            prepare(context, storeOptions);
+        }
+    }
+}
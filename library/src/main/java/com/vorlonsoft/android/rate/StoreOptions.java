@@ -9,8 +9,6 @@ package com.vorlonsoft.android.rate;
 import android.content.Intent;
 import android.net.Uri;
 
-import static com.vorlonsoft.android.rate.StoreType.APPLE;
-import static com.vorlonsoft.android.rate.StoreType.BLACKBERRY;
 import static com.vorlonsoft.android.rate.StoreType.GOOGLEPLAY;
 import static com.vorlonsoft.android.rate.StoreType.INTENT;
 import static com.vorlonsoft.android.rate.StoreType.OTHER;
@@ -51,10 +49,6 @@ final class StoreOptions {
     void setStoreType(final int storeType, final String[] stringParam, final Intent[] intentParaam) {
         this.storeType = storeType;
         switch (storeType) {
-            case APPLE:
-            case BLACKBERRY:
-                setApplicationId(stringParam[0]);
-                break;
             case INTENT:
                 setIntents(intentParaam);
                 break;
@@ -70,6 +64,12 @@ final class StoreOptions {
                     }
                 }
                 setIntents(intents);
+                break;
+            default:
+                final StoreDescriptor store = StoreDescriptor.get(storeType);
+                if ((store != null) && store.isApplicationIdRequired()) {
+                    setApplicationId(stringParam[0]);
+                }
         }
     }
 
@@ -9,28 +9,64 @@ package com.vorlonsoft.android.rate;
 import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import java.util.ArrayList;
-import java.util.List;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 final class Utils {
 
-    static final long DAY_IN_MILLIS = 86400000L;
+    static final String TAG = "ANDROIDRATE";
+
+    /**
+     * {@link SystemClock#elapsedRealtime()}, monotonic and counting deep sleep
+     */
+    static final RateClock ELAPSED_REALTIME_CLOCK = new RateClock() {
+        @Override
+        public long currentTimeMillis() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
 
-    static final short YEAR_IN_DAYS = (short) 365;
+    private static Handler backgroundHandler = null;
 
-    static final String TAG = "ANDROIDRATE";
+    private static volatile RateMetricsListener metricsListener = null;
 
     private Utils() {
         throw new AssertionError();
     }
 
+    /**
+     * @return the handler of the shared low-priority AndroidRate worker thread
+     */
+    static synchronized Handler getBackgroundHandler() {
+        if (backgroundHandler == null) {
+            final HandlerThread handlerThread = new HandlerThread("AndroidRate-Worker", Process.THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            backgroundHandler = new Handler(handlerThread.getLooper());
+        }
+        return backgroundHandler;
+    }
+
+    /**
+     * @return the metrics listener, null if unset: callers skip the timing altogether
+     */
+    @Nullable
+    static RateMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    static void setMetricsListener(@Nullable final RateMetricsListener listener) {
+        metricsListener = listener;
+    }
+
     private static boolean isLollipop() {
         return ((Build.VERSION.SDK_INT == Build.VERSION_CODES.LOLLIPOP) || (Build.VERSION.SDK_INT == Build.VERSION_CODES.LOLLIPOP_MR1));
     }
@@ -69,26 +105,18 @@ final class Utils {
             return EMPTY_STRING_ARRAY;
         }
 
-        final List<ApplicationInfo> applicationInfo = context.getPackageManager().getInstalledApplications(0);
         if (targetPackages.length == 1) {
-            if ((targetPackages[0] != null) && (targetPackages[0].hashCode() != EMPTY_STRING.hashCode())) {
-                for (ApplicationInfo anApplicationInfo : applicationInfo) {
-                    if (targetPackages[0].equals(anApplicationInfo.packageName)) {
-                        return new String[]{targetPackages[0]};
-                    }
-                }
+            if ((targetPackages[0] != null) && (targetPackages[0].hashCode() != EMPTY_STRING.hashCode()) &&
+                    PackageIndex.isInstalled(context, targetPackages[0])) {
+                return new String[]{targetPackages[0]};
             }
             return EMPTY_STRING_ARRAY;
         } else {
             final ArrayList<String> packageNames = new ArrayList<>();
             for (String aTargetPackage : targetPackages) {
-                if ((aTargetPackage != null) && (aTargetPackage.hashCode() != EMPTY_STRING.hashCode())) {
-                    for (ApplicationInfo anApplicationInfo : applicationInfo) {
-                        if (aTargetPackage.equals(anApplicationInfo.packageName)) {
-                            packageNames.add(aTargetPackage);
-                            break;
-                        }
-                    }
+                if ((aTargetPackage != null) && (aTargetPackage.hashCode() != EMPTY_STRING.hashCode()) &&
+                        PackageIndex.isInstalled(context, aTargetPackage)) {
+                    packageNames.add(aTargetPackage);
                 }
             }
             return packageNames.toArray(new String[0]);
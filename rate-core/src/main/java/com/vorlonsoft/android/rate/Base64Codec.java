@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import androidx.annotation.NonNull;
+
+/**
+ * RFC 4648 Base64 with padding and without line wrapping, the output of
+ * android.util.Base64.NO_WRAP, which is unavailable on the JVM (and java.util.Base64 before API 26).
+ */
+final class Base64Codec {
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = (byte) -1;
+        }
+        for (byte b = 0; b < ALPHABET.length; b++) {
+            VALUES[ALPHABET[b]] = b;
+        }
+    }
+
+    private Base64Codec() {
+        throw new AssertionError();
+    }
+
+    @NonNull
+    static String encode(@NonNull final byte[] bytes) {
+        final char[] chars = new char[((bytes.length + 2) / 3) * 4];
+        int c = 0;
+        for (int i = 0; i < bytes.length; i += 3) {
+            final int remaining = bytes.length - i;
+            final int group = ((bytes[i] & 0xff) << 16)
+                    | (remaining > 1 ? (bytes[i + 1] & 0xff) << 8 : 0)
+                    | (remaining > 2 ? bytes[i + 2] & 0xff : 0);
+            chars[c++] = ALPHABET[(group >>> 18) & 0x3f];
+            chars[c++] = ALPHABET[(group >>> 12) & 0x3f];
+            chars[c++] = remaining > 1 ? ALPHABET[(group >>> 6) & 0x3f] : '=';
+            chars[c++] = remaining > 2 ? ALPHABET[group & 0x3f] : '=';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code encoded} isn't padded Base64
+     */
+    @NonNull
+    static byte[] decode(@NonNull final String encoded) {
+        final int length = encoded.length();
+        if ((length % 4) != 0) {
+            throw new IllegalArgumentException("Bad Base64 length");
+        }
+        final int padding = length == 0 ? 0 : (encoded.charAt(length - 1) == '=' ? (encoded.charAt(length - 2) == '=' ? 2 : 1) : 0);
+        final byte[] bytes = new byte[((length / 4) * 3) - padding];
+        int b = 0;
+        for (int i = 0; i < length; i += 4) {
+            int group = 0;
+            for (int j = 0; j < 4; j++) {
+                final char c = encoded.charAt(i + j);
+                int value = c < VALUES.length ? VALUES[c] : -1;
+                if ((c == '=') && (i + 4 == length) && (j >= 4 - padding)) {
+                    value = 0;
+                } else if (value < 0) {
+                    throw new IllegalArgumentException("Bad Base64 character");
+                }
+                group = (group << 6) | value;
+            }
+            for (int k = 16; (k >= 0) && (b < bytes.length); k -= 8) {
+                bytes[b++] = (byte) (group >>> k);
+            }
+        }
+        return bytes;
+    }
+}
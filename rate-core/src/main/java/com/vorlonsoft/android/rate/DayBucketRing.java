@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Fixed-size ring of per-day counters with a maintained running total.<br>
+ * Bucket i holds the count for the day {@code lastDay - ((lastDay - i) mod length)},
+ * so the ring always covers the {@code length} days ending at {@code lastDay}.
+ * Increments and window sums are O(1), advancing the ring evicts expired days.
+ */
+final class DayBucketRing {
+
+    private static final byte FORMAT_VERSION = (byte) 1;
+
+    /** version (byte) + length (short) + lastDay (long) + nonzero buckets number (short) */
+    private static final byte HEADER_SIZE = (byte) 13;
+
+    /** day offset from lastDay (short) + count (int) */
+    private static final byte ENTRY_SIZE = (byte) 6;
+
+    private final int[] buckets;
+
+    private long lastDay = 0L;
+
+    private long total = 0L;
+
+    DayBucketRing(final short length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("DayBucketRing length must be > 0");
+        }
+        buckets = new int[length];
+    }
+
+    /**
+     * Decodes a ring previously encoded by {@link #encode()}.
+     *
+     * @param encoded the Base64 string, may be null
+     * @param length the expected ring length
+     * @return the decoded ring or null if {@code encoded} is null or malformed
+     */
+    @Nullable
+    static DayBucketRing decode(@Nullable final String encoded, final short length) {
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(Base64Codec.decode(encoded));
+            if ((buffer.get() != FORMAT_VERSION) || (buffer.getShort() != length)) {
+                return null;
+            }
+            final DayBucketRing ring = new DayBucketRing(length);
+            ring.lastDay = buffer.getLong();
+            final short entriesNumber = buffer.getShort();
+            for (short s = 0; s < entriesNumber; s++) {
+                ring.add(ring.lastDay - buffer.getShort(), buffer.getInt());
+            }
+            return ring;
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private int indexOf(final long day) {
+        return (int) (day % buckets.length);
+    }
+
+    /**
+     * Moves the newest bucket to {@code day}, evicting every day that falls out of the window.
+     * Costs at most {@code length} steps and nothing when {@code day <= lastDay}.
+     */
+    private void advance(final long day) {
+        if (day <= lastDay) {
+            return;
+        }
+        if (day - lastDay >= buckets.length) {
+            clear();
+        } else {
+            for (long d = lastDay + 1; d <= day; d++) {
+                final int index = indexOf(d);
+                total -= buckets[index];
+                buckets[index] = 0;
+            }
+        }
+        lastDay = day;
+    }
+
+    /**
+     * Adds {@code count} to the bucket of {@code day}. Days older than the window are dropped.
+     */
+    void add(final long day, final int count) {
+        if ((count <= 0) || (day < 0L)) {
+            return;
+        }
+        advance(day);
+        if (lastDay - day >= buckets.length) {
+            return;
+        }
+        final int index = indexOf(day);
+        final int updated = buckets[index] + count;
+        // saturate instead of wrapping to negative
+        final int added = (updated < 0 ? Integer.MAX_VALUE : updated) - buckets[index];
+        buckets[index] += added;
+        total += added;
+    }
+
+    void increment(final long day) {
+        add(day, 1);
+    }
+
+    /**
+     * @param day the current day
+     * @return the sum of the {@code length} days ending at {@code day}
+     */
+    long sum(final long day) {
+        advance(day);
+        return total;
+    }
+
+    void clear() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = 0;
+        }
+        total = 0L;
+    }
+
+    /**
+     * Encodes only the nonzero buckets, so an idle ring stays a few bytes long.
+     *
+     * @return the Base64 (no wrap) representation of the ring
+     */
+    @NonNull
+    String encode() {
+        short entriesNumber = 0;
+        for (int bucket : buckets) {
+            if (bucket != 0) {
+                entriesNumber++;
+            }
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (entriesNumber * ENTRY_SIZE));
+        buffer.put(FORMAT_VERSION);
+        buffer.putShort((short) buckets.length);
+        buffer.putLong(lastDay);
+        buffer.putShort(entriesNumber);
+        for (short offset = 0; offset < buckets.length; offset++) {
+            final int bucket = buckets[indexOf(lastDay - offset + buckets.length)];
+            if (bucket != 0) {
+                buffer.putShort(offset);
+                buffer.putInt(bucket);
+            }
+        }
+        return Base64Codec.encode(buffer.array());
+    }
+}
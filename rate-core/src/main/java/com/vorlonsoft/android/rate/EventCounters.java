@@ -0,0 +1,199 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Custom event counters. Counters are {@link RateCounter}s: increments are lock-free in memory and
+ * a counter is handed to the storage once per write, see {@link #schedule(String, RateCounter)}.<br>
+ * This implementation keeps each event under its own {@link KeyValueStore} key.
+ */
+class EventCounters {
+
+    /**
+     * The key prefix for each custom event,
+     * so that there is no clash with existing keys (PREF_KEY_INSTALL_DATE etc.)
+     */
+    static final String PREF_KEY_CUSTOM_EVENT_PREFIX = "androidrate_custom_event_prefix_";
+
+    final ConcurrentHashMap<String, RateCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented by every mutation, see {@link #getModCount()}
+     */
+    final AtomicInteger modCount = new AtomicInteger();
+
+    private KeyValueStore store = null;
+
+    /**
+     * The stored values, dropped by {@link #clear()}
+     */
+    private Map<String, ?> values = null;
+
+    EventCounters() {
+    }
+
+    /**
+     * Called once by {@link RateStorage} with the values it has loaded.
+     *
+     * @param store the storage
+     * @param values every stored key and its value
+     */
+    void load(@NonNull final KeyValueStore store, @NonNull final Map<String, ?> values) {
+        this.store = store;
+        this.values = values;
+    }
+
+    /**
+     * @return the stored count of {@code eventName}, read once per event
+     */
+    int read(@NonNull final String eventName) {
+        final Object value = values == null ? null : values.get(PREF_KEY_CUSTOM_EVENT_PREFIX + eventName);
+        return value instanceof Integer ? (Integer) value : 0;
+    }
+
+    /**
+     * Called by the first mutation of {@code counter} after it was written.
+     */
+    void schedule(@NonNull final String eventName, @NonNull final RateCounter counter) {
+        if (store != null) {
+            store.putCounter(PREF_KEY_CUSTOM_EVENT_PREFIX + eventName, counter);
+        }
+    }
+
+    /**
+     * @return the counter of {@code eventName}, read from the storage on first use
+     */
+    @NonNull
+    RateCounter getCounter(@NonNull final String eventName) {
+        RateCounter counter = counters.get(eventName);
+        if (counter == null) {
+            final RateCounter newCounter = new RateCounter(read(eventName));
+            counter = counters.putIfAbsent(eventName, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    int get(@NonNull final String eventName) {
+        return getCounter(eventName).get();
+    }
+
+    /**
+     * @return a number that changes whenever a count changes
+     */
+    int getModCount() {
+        return modCount.get();
+    }
+
+    void set(@NonNull final String eventName, final int count) {
+        final RateCounter counter = getCounter(eventName);
+        counter.set(count);
+        modCount.incrementAndGet();
+        if (counter.markDirty()) {
+            schedule(eventName, counter);
+        }
+    }
+
+    /**
+     * Lock-free increment, safe to call from any number of threads at the same time.
+     */
+    void increment(@NonNull final String eventName) {
+        add(eventName, 1);
+    }
+
+    /**
+     * Lock-free, safe to call from any number of threads at the same time.
+     */
+    void add(@NonNull final String eventName, final int delta) {
+        final RateCounter counter = getCounter(eventName);
+        counter.addAndGet(delta);
+        modCount.incrementAndGet();
+        if (counter.markDirty()) {
+            schedule(eventName, counter);
+        }
+    }
+
+    /**
+     * Applies the event changes of a {@link RateTransaction} as one batch. This implementation
+     * adds the changed counters, and the removals of a clear, to {@code values}, so that they are
+     * written by the same {@link KeyValueStore#putAll(Map)} as the rest of the transaction.
+     *
+     * @param isCleared true if every event is reset before the changes
+     * @param changes the event changes, in the order they were recorded
+     * @param values the values of the transaction, written after this call
+     */
+    synchronized void apply(final boolean isCleared,
+                            @NonNull final Map<String, RateTransaction.EventChange> changes,
+                            @NonNull final Map<String, Object> values) {
+        if (isCleared) {
+            for (String eventName : counters.keySet()) {
+                values.put(PREF_KEY_CUSTOM_EVENT_PREFIX + eventName, null);
+            }
+            if (this.values != null) {
+                for (String key : this.values.keySet()) {
+                    if (key.startsWith(PREF_KEY_CUSTOM_EVENT_PREFIX)) {
+                        values.put(key, null);
+                    }
+                }
+            }
+            counters.clear();
+            this.values = null;
+        }
+        for (Map.Entry<String, RateTransaction.EventChange> entry : changes.entrySet()) {
+            final RateTransaction.EventChange eventChange = entry.getValue();
+            if (eventChange.isSet || (eventChange.value != 0)) {
+                final RateCounter counter = applyInMemory(entry.getKey(), eventChange);
+                counter.markDirty();
+                values.put(PREF_KEY_CUSTOM_EVENT_PREFIX + entry.getKey(), counter);
+            }
+        }
+        modCount.incrementAndGet();
+    }
+
+    /**
+     * @return the counter of the event, after the change
+     */
+    @NonNull
+    final RateCounter applyInMemory(@NonNull final String eventName, @NonNull final RateTransaction.EventChange eventChange) {
+        final RateCounter counter = getCounter(eventName);
+        if (eventChange.isSet) {
+            counter.set(eventChange.value);
+        } else {
+            counter.addAndGet(eventChange.value);
+        }
+        return counter;
+    }
+
+    /**
+     * Resets every event to zero.
+     */
+    synchronized void clear() {
+        if (store != null) {
+            for (String eventName : counters.keySet()) {
+                store.remove(PREF_KEY_CUSTOM_EVENT_PREFIX + eventName);
+            }
+            if (values != null) {
+                for (String key : values.keySet()) {
+                    if (key.startsWith(PREF_KEY_CUSTOM_EVENT_PREFIX)) {
+                        store.remove(key);
+                    }
+                }
+            }
+        }
+        counters.clear();
+        values = null;
+        modCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Wall time read once, then advanced by a monotonic clock: changing the device date or time zone
+ * while the process lives doesn't move AppRate dates backwards or make them jump ahead.
+ */
+public final class HybridRateClock implements RateClock {
+
+    /**
+     * {@link System#nanoTime()} in milliseconds, arbitrary origin
+     */
+    private static final RateClock NANO_TIME = new RateClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.nanoTime() / 1000000L;
+        }
+    };
+
+    private final RateClock elapsedClock;
+
+    private final long anchorTime;
+
+    private final long anchorElapsed;
+
+    /**
+     * Uses {@link System#nanoTime()}, which on Android doesn't count deep sleep,
+     * see {@link #HybridRateClock(RateClock, RateClock)}.
+     */
+    public HybridRateClock() {
+        this(WALL, NANO_TIME);
+    }
+
+    /**
+     * @param wallClock the wall clock, read once
+     * @param elapsedClock a monotonic clock in milliseconds with an arbitrary origin,
+     *                     e.g. SystemClock.elapsedRealtime() on Android
+     */
+    public HybridRateClock(@NonNull final RateClock wallClock, @NonNull final RateClock elapsedClock) {
+        this.elapsedClock = elapsedClock;
+        anchorElapsed = elapsedClock.currentTimeMillis();
+        anchorTime = wallClock.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return anchorTime + (elapsedClock.currentTimeMillis() - anchorElapsed);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Persistent storage of {@link RateStorage}, e.g. SharedPreferences on Android or
+ * {@link MemoryKeyValueStore} on the JVM.<br>
+ * The mutations may be written asynchronously, but in order, and must be durable once
+ * {@link #commit()} returns; {@link #getAll()} sees them as soon as they are made.
+ */
+public interface KeyValueStore {
+
+    /**
+     * A value read when the store writes it rather than when it's put, so that a lock-free counter
+     * is handed to the store once per write however many times it changes in between.
+     */
+    interface Counter {
+
+        /**
+         * Called by the store right before the value is written.
+         *
+         * @return the current value
+         */
+        int snapshot();
+
+    }
+
+    /**
+     * A String value encoded when the store writes it, the {@link Counter} of structured values.
+     */
+    interface Encoded {
+
+        /**
+         * Called by the store right before the value is written.
+         *
+         * @return the current encoded value
+         */
+        @NonNull
+        String encode();
+
+    }
+
+    /**
+     * @return every stored key and its Boolean, Integer, Long or String value,
+     *         including the mutations not written yet
+     */
+    @NonNull
+    Map<String, ?> getAll();
+
+    void putBoolean(@NonNull final String key, final boolean value);
+
+    void putInt(@NonNull final String key, final int value);
+
+    void putLong(@NonNull final String key, final long value);
+
+    /**
+     * @param value the value, null removes the key
+     */
+    void putString(@NonNull final String key, @Nullable final String value);
+
+    /**
+     * @param counter the counter, {@link Counter#snapshot()} is written
+     */
+    void putCounter(@NonNull final String key, @NonNull final Counter counter);
+
+    /**
+     * @param encoded the value, {@link Encoded#encode()} is written as a String
+     */
+    void putEncoded(@NonNull final String key, @NonNull final Encoded encoded);
+
+    void remove(@NonNull final String key);
+
+    /**
+     * Puts every value at once, they are written together.
+     *
+     * @param values Boolean, Integer, Long, String, {@link Counter} or {@link Encoded} values, a null value removes the key
+     */
+    void putAll(@NonNull final Map<String, ?> values);
+
+    /**
+     * Removes every key, including the ones put before this call and not yet written.
+     */
+    void clear();
+
+    /**
+     * Synchronously writes the pending mutations.
+     *
+     * @return true if the mutations were successfully written
+     */
+    boolean commit();
+
+}
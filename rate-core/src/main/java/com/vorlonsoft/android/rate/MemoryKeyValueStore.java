@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link KeyValueStore} kept in a map, for the JVM and for tests. Every mutation is written immediately.
+ */
+public final class MemoryKeyValueStore implements KeyValueStore {
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    public MemoryKeyValueStore() {
+    }
+
+    @NonNull
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Override
+    public synchronized void putBoolean(@NonNull final String key, final boolean value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public synchronized void putInt(@NonNull final String key, final int value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public synchronized void putLong(@NonNull final String key, final long value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public synchronized void putString(@NonNull final String key, @Nullable final String value) {
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+    }
+
+    @Override
+    public synchronized void putCounter(@NonNull final String key, @NonNull final Counter counter) {
+        values.put(key, counter.snapshot());
+    }
+
+    @Override
+    public synchronized void putEncoded(@NonNull final String key, @NonNull final Encoded encoded) {
+        values.put(key, encoded.encode());
+    }
+
+    @Override
+    public synchronized void remove(@NonNull final String key) {
+        values.remove(key);
+    }
+
+    @Override
+    public synchronized void putAll(@NonNull final Map<String, ?> values) {
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            final Object value = entry.getValue();
+            if (value == null) {
+                this.values.remove(entry.getKey());
+            } else {
+                this.values.put(entry.getKey(), value instanceof Counter ? ((Counter) value).snapshot()
+                        : value instanceof Encoded ? ((Encoded) value).encode() : value);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        values.clear();
+    }
+
+    @Override
+    public boolean commit() {
+        return true;
+    }
+}
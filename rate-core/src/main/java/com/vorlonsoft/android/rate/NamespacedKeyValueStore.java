@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A view of another {@link KeyValueStore} where every key is prefixed, so that several
+ * {@link RateStorage}s share one store, its loaded values and its writer without clashing.
+ */
+final class NamespacedKeyValueStore implements KeyValueStore {
+
+    private final KeyValueStore store;
+
+    private final String prefix;
+
+    /**
+     * @param store the shared store
+     * @param prefix the prefix of every key of this view, must not be a prefix of another view's one
+     */
+    NamespacedKeyValueStore(@NonNull final KeyValueStore store, @NonNull final String prefix) {
+        this.store = store;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return the keys of this view without the prefix
+     */
+    @NonNull
+    @Override
+    public Map<String, ?> getAll() {
+        final Map<String, Object> values = new HashMap<>();
+        final int prefixLength = prefix.length();
+        for (Map.Entry<String, ?> entry : store.getAll().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                values.put(entry.getKey().substring(prefixLength), entry.getValue());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putBoolean(@NonNull final String key, final boolean value) {
+        store.putBoolean(prefix + key, value);
+    }
+
+    @Override
+    public void putInt(@NonNull final String key, final int value) {
+        store.putInt(prefix + key, value);
+    }
+
+    @Override
+    public void putLong(@NonNull final String key, final long value) {
+        store.putLong(prefix + key, value);
+    }
+
+    @Override
+    public void putString(@NonNull final String key, @Nullable final String value) {
+        store.putString(prefix + key, value);
+    }
+
+    @Override
+    public void putCounter(@NonNull final String key, @NonNull final Counter counter) {
+        store.putCounter(prefix + key, counter);
+    }
+
+    @Override
+    public void putEncoded(@NonNull final String key, @NonNull final Encoded encoded) {
+        store.putEncoded(prefix + key, encoded);
+    }
+
+    @Override
+    public void remove(@NonNull final String key) {
+        store.remove(prefix + key);
+    }
+
+    @Override
+    public void putAll(@NonNull final Map<String, ?> values) {
+        final Map<String, Object> prefixedValues = new HashMap<>();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            prefixedValues.put(prefix + entry.getKey(), entry.getValue());
+        }
+        store.putAll(prefixedValues);
+    }
+
+    /**
+     * Removes the written keys of this view, the other views are kept.
+     */
+    @Override
+    public void clear() {
+        for (String key : store.getAll().keySet()) {
+            if (key.startsWith(prefix)) {
+                store.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending mutations of every view.
+     */
+    @Override
+    public boolean commit() {
+        return store.commit();
+    }
+}
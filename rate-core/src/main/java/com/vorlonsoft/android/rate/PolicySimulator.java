@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * Offline tuning of the AppRate thresholds: replays {@link UserTimeline}s against a {@link RateEngine}
+ * configuration on a {@link TestRateClock}, the way {@code AppRate.monitor()} and
+ * {@code AppRate.showRateDialogIfMeetsConditions(Activity)} would on every launch, and aggregates
+ * the outcomes into a {@link SimulationResult}. The users are split across a {@link ForkJoinPool},
+ * each one has its own {@link RateStorage} over a store that discards the writes. Runs on a plain JVM.
+ */
+public final class PolicySimulator {
+
+    /**
+     * The users of a leaf task, each leaf task creates one engine
+     */
+    private static final short LEAF_USERS_NUMBER = (short) 512;
+
+    /**
+     * 2018-01-01 UTC, the timelines times are relative to it
+     */
+    private static final long START_TIME = 17532L * DAY_IN_MILLIS;
+
+    /**
+     * The timelines to replay, {@link #get(int)} is called from several threads at the same time
+     */
+    public interface Timelines {
+
+        int size();
+
+        @NonNull
+        UserTimeline get(final int index);
+
+    }
+
+    /**
+     * A configuration to simulate. Called once per leaf task, so the engines are never shared between threads.
+     */
+    public interface Policy {
+
+        @NonNull
+        RateEngine createEngine();
+
+    }
+
+    /**
+     * A simulated user is never reloaded, so nothing is kept; the counters stay dirty and are never handed over again
+     */
+    private static final KeyValueStore DISCARDING_STORE = new KeyValueStore() {
+        @NonNull
+        @Override
+        public Map<String, ?> getAll() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void putBoolean(@NonNull final String key, final boolean value) {
+        }
+
+        @Override
+        public void putInt(@NonNull final String key, final int value) {
+        }
+
+        @Override
+        public void putLong(@NonNull final String key, final long value) {
+        }
+
+        @Override
+        public void putString(@NonNull final String key, @Nullable final String value) {
+        }
+
+        @Override
+        public void putCounter(@NonNull final String key, @NonNull final Counter counter) {
+        }
+
+        @Override
+        public void putEncoded(@NonNull final String key, @NonNull final Encoded encoded) {
+        }
+
+        @Override
+        public void remove(@NonNull final String key) {
+        }
+
+        @Override
+        public void putAll(@NonNull final Map<String, ?> values) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public boolean commit() {
+            return true;
+        }
+    };
+
+    private final Timelines timelines;
+
+    private final ForkJoinPool pool;
+
+    private int maxDays = 365;
+
+    public PolicySimulator(@NonNull final Timelines timelines) {
+        this(timelines, ForkJoinPool.commonPool());
+    }
+
+    public PolicySimulator(@NonNull final Timelines timelines, @NonNull final ForkJoinPool pool) {
+        this.timelines = timelines;
+        this.pool = pool;
+    }
+
+    /**
+     * @param maxDays the length of the time to the first prompt histogram, 365 by default
+     */
+    public PolicySimulator setMaxDays(final int maxDays) {
+        this.maxDays = maxDays;
+        return this;
+    }
+
+    @NonNull
+    public SimulationResult simulate(@NonNull final Policy policy) {
+        return pool.invoke(new SimulationTask(policy, 0, timelines.size()));
+    }
+
+    /**
+     * Simulates every configuration of a parameter grid, one after the other, each in parallel.
+     */
+    @NonNull
+    public List<SimulationResult> simulate(@NonNull final List<? extends Policy> policies) {
+        final List<SimulationResult> results = new ArrayList<>(policies.size());
+        for (Policy policy : policies) {
+            results.add(simulate(policy));
+        }
+        return results;
+    }
+
+    private void simulateUser(@NonNull final RateEngine engine, @NonNull final UserTimeline timeline,
+                              @NonNull final SimulationResult result) {
+        final TestRateClock clock = new TestRateClock(START_TIME);
+        final RateStorage storage = new RateStorage(DISCARDING_STORE, clock);
+        engine.trackWindows(storage);
+        final RateState state = storage.getState();
+        int promptsNumber = 0;
+        long firstPromptDelay = 0L;
+        boolean isRated = false;
+        boolean isDeclined = false;
+        for (int i = 0; i < timeline.getActionsNumber(); i++) {
+            final long currentTime = START_TIME + timeline.getTime(i);
+            clock.setCurrentTimeMillis(currentTime);
+            final String eventName = timeline.getEventName(i);
+            if (eventName != null) {
+                storage.incrementCustomEventCount(eventName);
+                continue;
+            }
+            if (storage.isFirstLaunch()) {
+                storage.setFirstLaunch();
+            } else {
+                storage.incrementLaunchTimes();
+            }
+            if (!engine.shouldShowRateDialog(state, currentTime)) {
+                continue;
+            }
+            if (promptsNumber == 0) {
+                firstPromptDelay = currentTime - state.getInstallDate();
+                storage.setDialogFirstLaunchTime();
+            }
+            storage.increment365DayPeriodDialogLaunchTimes();
+            switch (timeline.getResponse(promptsNumber++)) {
+                case UserTimeline.RESPONSE_RATE:
+                    isRated = true;
+                    storage.setAgreeShowDialog(false);
+                    break;
+                case UserTimeline.RESPONSE_NEVER:
+                    isDeclined = true;
+                    storage.setAgreeShowDialog(false);
+                    break;
+                default:
+                    storage.setRemindInterval();
+                    break;
+            }
+        }
+        result.addUser(promptsNumber, firstPromptDelay, isRated, isDeclined);
+    }
+
+    /**
+     * Simulates the users from {@code from} inclusive to {@code to} exclusive, splitting the range in halves
+     */
+    private final class SimulationTask extends RecursiveTask<SimulationResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Policy policy;
+
+        private final int from;
+
+        private final int to;
+
+        SimulationTask(@NonNull final Policy policy, final int from, final int to) {
+            this.policy = policy;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (to - from <= LEAF_USERS_NUMBER) {
+                final RateEngine engine = policy.createEngine();
+                final SimulationResult result = new SimulationResult(maxDays);
+                for (int i = from; i < to; i++) {
+                    simulateUser(engine, timelines.get(i), result);
+                }
+                return result;
+            }
+            final int middle = (from + to) >>> 1;
+            final SimulationTask left = new SimulationTask(policy, from, middle);
+            left.fork();
+            final SimulationResult right = new SimulationTask(policy, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
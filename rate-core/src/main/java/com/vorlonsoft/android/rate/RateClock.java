@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+/**
+ * Time source of every AppRate date: the install date, the remind interval, the dialog launch times
+ * and the decision time. Implementations must not allocate, see {@link HybridRateClock} and
+ * {@link TestRateClock}.
+ */
+public interface RateClock {
+
+    long DAY_IN_MILLIS = 86400000L;
+
+    /**
+     * The wall clock, {@link System#currentTimeMillis()}. The default.
+     */
+    RateClock WALL = new RateClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * @return the current time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A condition that must be met to show the rate dialog, see {@link RateEngine#addCondition(RateCondition)}.
+ */
+public interface RateCondition {
+
+    /**
+     * Estimated relative cost of {@link #isMet(RateState, long)}: 1 for a few field reads.
+     * Cheap and often failing conditions are evaluated first.
+     */
+    int getCost();
+
+    /**
+     * Must depend only on {@code state}, {@code currentTime} and the condition's own configuration.
+     *
+     * @param state the AppRate state snapshot
+     * @param currentTime the current time in milliseconds, the same for all conditions of one evaluation
+     * @return true if the condition is met
+     */
+    boolean isMet(@NonNull final RateState state, final long currentTime);
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Evaluates the show-dialog {@link RateCondition}s as a short-circuit AND.<br>
+ * Conditions are kept sorted by expected cost per rejection, cost / P(fail), with P(fail)
+ * estimated from the recorded pass/fail statistics, so cheap and selective conditions run first.
+ */
+final class RateConditionPipeline {
+
+    /**
+     * The conditions are re-sorted every REORDER_INTERVAL evaluations
+     */
+    private static final byte REORDER_INTERVAL = (byte) 32;
+
+    private RateCondition[] conditions = new RateCondition[0];
+
+    private long[] passCounts = new long[0];
+
+    private long[] failCounts = new long[0];
+
+    private byte evaluationsSinceReorder = 0;
+
+    private RateCondition lastRejectedBy = null;
+
+    RateConditionPipeline() {
+    }
+
+    /**
+     * Laplace-smoothed cost / P(fail), the lower the earlier the condition is evaluated.
+     */
+    private double getScore(final int index) {
+        final double failProbability = (failCounts[index] + 1.0d) / (passCounts[index] + failCounts[index] + 2.0d);
+        return conditions[index].getCost() / failProbability;
+    }
+
+    /**
+     * Stable insertion sort of the parallel arrays, allocation-free and fast for a handful of conditions.
+     */
+    private void reorder() {
+        for (int i = 1; i < conditions.length; i++) {
+            final double score = getScore(i);
+            final RateCondition condition = conditions[i];
+            final long passCount = passCounts[i];
+            final long failCount = failCounts[i];
+            int j = i - 1;
+            while ((j >= 0) && (getScore(j) > score)) {
+                conditions[j + 1] = conditions[j];
+                passCounts[j + 1] = passCounts[j];
+                failCounts[j + 1] = failCounts[j];
+                j--;
+            }
+            conditions[j + 1] = condition;
+            passCounts[j + 1] = passCount;
+            failCounts[j + 1] = failCount;
+        }
+        evaluationsSinceReorder = 0;
+    }
+
+    private int indexOf(final RateCondition condition) {
+        for (int i = 0; i < conditions.length; i++) {
+            if (conditions[i] == condition) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    synchronized boolean add(@NonNull final RateCondition condition) {
+        if (indexOf(condition) >= 0) {
+            return false;
+        }
+        final int length = conditions.length;
+        final RateCondition[] newConditions = new RateCondition[length + 1];
+        final long[] newPassCounts = new long[length + 1];
+        final long[] newFailCounts = new long[length + 1];
+        System.arraycopy(conditions, 0, newConditions, 0, length);
+        System.arraycopy(passCounts, 0, newPassCounts, 0, length);
+        System.arraycopy(failCounts, 0, newFailCounts, 0, length);
+        newConditions[length] = condition;
+        conditions = newConditions;
+        passCounts = newPassCounts;
+        failCounts = newFailCounts;
+        reorder();
+        return true;
+    }
+
+    synchronized boolean remove(@NonNull final RateCondition condition) {
+        final int index = indexOf(condition);
+        if (index < 0) {
+            return false;
+        }
+        final int length = conditions.length - 1;
+        final RateCondition[] newConditions = new RateCondition[length];
+        final long[] newPassCounts = new long[length];
+        final long[] newFailCounts = new long[length];
+        System.arraycopy(conditions, 0, newConditions, 0, index);
+        System.arraycopy(passCounts, 0, newPassCounts, 0, index);
+        System.arraycopy(failCounts, 0, newFailCounts, 0, index);
+        System.arraycopy(conditions, index + 1, newConditions, index, length - index);
+        System.arraycopy(passCounts, index + 1, newPassCounts, index, length - index);
+        System.arraycopy(failCounts, index + 1, newFailCounts, index, length - index);
+        conditions = newConditions;
+        passCounts = newPassCounts;
+        failCounts = newFailCounts;
+        if (lastRejectedBy == condition) {
+            lastRejectedBy = null;
+        }
+        return true;
+    }
+
+    /**
+     * @param state the AppRate state snapshot
+     * @param currentTime the current time in milliseconds
+     * @return true if every condition is met
+     */
+    synchronized boolean isMet(@NonNull final RateState state, final long currentTime) {
+        if (++evaluationsSinceReorder >= REORDER_INTERVAL) {
+            reorder();
+        }
+        for (int i = 0; i < conditions.length; i++) {
+            if (conditions[i].isMet(state, currentTime)) {
+                passCounts[i]++;
+            } else {
+                failCounts[i]++;
+                lastRejectedBy = conditions[i];
+                return false;
+            }
+        }
+        lastRejectedBy = null;
+        return true;
+    }
+
+    /**
+     * @return the condition that rejected the last evaluation, null if it passed
+     */
+    @Nullable
+    synchronized RateCondition getLastRejectedBy() {
+        return lastRejectedBy;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free counter of the launches or of a custom event, saturating at the int bounds.<br>
+ * The dirty flag lets the {@link KeyValueStore} persist the counter asynchronously: only the first
+ * mutation after a write hands the counter to the store, which reads the current value when it writes.
+ */
+final class RateCounter implements KeyValueStore.Counter {
+
+    private final AtomicInteger count;
+
+    private final AtomicBoolean isDirty = new AtomicBoolean(false);
+
+    RateCounter(final int initialCount) {
+        count = new AtomicInteger(initialCount);
+    }
+
+    int get() {
+        return count.get();
+    }
+
+    void set(final int newCount) {
+        count.set(newCount);
+    }
+
+    /**
+     * @return the new count, Integer.MAX_VALUE once saturated
+     */
+    int incrementAndGet() {
+        for (;;) {
+            final int current = count.get();
+            if (current == Integer.MAX_VALUE) {
+                return current;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * @return the new count, clamped to the int bounds
+     */
+    int addAndGet(final int delta) {
+        for (;;) {
+            final int current = count.get();
+            final int next = saturatedAdd(current, delta);
+            if ((next == current) || count.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return {@code a + b} clamped to the int bounds
+     */
+    static int saturatedAdd(final int a, final int b) {
+        final long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : sum < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) sum;
+    }
+
+    /**
+     * Undoes the wrap-around of the counts that earlier versions kept in a short:
+     * a negative stored count is a count past Short.MAX_VALUE.
+     *
+     * @param storedCount the count read from the storage of an earlier version
+     * @return the count
+     */
+    static int fromLegacyCount(final int storedCount) {
+        return storedCount < 0 ? storedCount & 0xFFFF : storedCount;
+    }
+
+    /**
+     * @return true if the counter wasn't dirty, i.e. the caller must schedule it for writing
+     */
+    boolean markDirty() {
+        return isDirty.compareAndSet(false, true);
+    }
+
+    /**
+     * Called by the writer before it reads the value, so a concurrent mutation is never lost.
+     */
+    void markClean() {
+        isDirty.set(false);
+    }
+
+    @Override
+    public int snapshot() {
+        markClean();
+        return get();
+    }
+}
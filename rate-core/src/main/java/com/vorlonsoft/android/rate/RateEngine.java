@@ -0,0 +1,438 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * The show-dialog thresholds and the decision: the built-in {@link RateCondition}s configured
+ * by the setters plus the ones added by the app, evaluated against a {@link RateState}.<br>
+ * The last decision is memoized until the state is mutated, the configuration changes or the
+ * earliest time a built-in time condition could flip, so repeated checks are a few field reads.
+ */
+public final class RateEngine {
+
+    private final Map<String, Integer> customEventsCounts = new HashMap<>();
+
+    /**
+     * The minimum counts within a sliding window, keyed by {@link WindowCounter#getKey(String, short)}
+     */
+    private final Map<String, WindowRequirement> windowRequirements = new HashMap<>();
+
+    private final RateConditionPipeline conditions = new RateConditionPipeline();
+
+    private final BuiltInCondition[] builtInConditions;
+
+    private int customConditionsNumber = 0;
+
+    /**
+     * Incremented by every setter, a decision made with another configuration is stale
+     */
+    private volatile int configVersion = 0;
+
+    private volatile Decision lastDecision = null;
+
+    private byte installDate = (byte) 10;
+
+    private int appLaunchTimes = 10;
+
+    private byte remindInterval = (byte) 1;
+
+    private byte remindLaunchTimes = (byte) 1;
+
+    /**
+     * Short.MAX_VALUE - unlimited occurrences of the display of the dialog within a 365-day period
+     */
+    private short dialogLaunchTimes = Short.MAX_VALUE;
+
+    public RateEngine() {
+        builtInConditions = new BuiltInCondition[]{new BuiltInCondition("agree_show_dialog") {
+            @Override
+            public int getCost() {
+                return 1;
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                return state.isAgreeShowDialog();
+            }
+        }, new BuiltInCondition("launch_times") {
+            @Override
+            public int getCost() {
+                return 1;
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                return ((appLaunchTimes == 0) || (state.getLaunchTimes() >= appLaunchTimes));
+            }
+        }, new BuiltInCondition("remind_launch_times") {
+            @Override
+            public int getCost() {
+                return 2;
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                return ((remindLaunchTimes == 1) || ((remindLaunchTimes != 0) && ((state.getLaunchTimes() % remindLaunchTimes) == 0)));
+            }
+        }, new BuiltInCondition("install_days") {
+            @Override
+            public int getCost() {
+                return 1;
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                return ((installDate == 0) || isOverDate(currentTime, state.getInstallDate(), installDate));
+            }
+
+            @Override
+            long getNextChangeTime(@NonNull final RateState state, final long currentTime) {
+                return getOverDate(currentTime, state.getInstallDate(), installDate);
+            }
+        }, new BuiltInCondition("remind_interval") {
+            @Override
+            public int getCost() {
+                return 1;
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                return ((remindInterval == 0) || isOverDate(currentTime, state.getRemindInterval(), remindInterval));
+            }
+
+            @Override
+            long getNextChangeTime(@NonNull final RateState state, final long currentTime) {
+                return getOverDate(currentTime, state.getRemindInterval(), remindInterval);
+            }
+        }, new BuiltInCondition("minimum_event_counts") {
+            @Override
+            public int getCost() {
+                return 1 + (4 * customEventsCounts.size());
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                for (Map.Entry<String, Integer> eventRequirement : customEventsCounts.entrySet()) {
+                    if (state.getCustomEventCount(eventRequirement.getKey()) < eventRequirement.getValue()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }, new BuiltInCondition("minimum_counts_in_window") {
+            @Override
+            public int getCost() {
+                return 1 + (8 * windowRequirements.size());
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                for (WindowRequirement requirement : windowRequirements.values()) {
+                    if (state.getCountInWindow(requirement.eventName, requirement.days, currentTime) < requirement.minimumCount) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * Counts only leave the windows, an unmet condition stays unmet. Otherwise the oldest day leaves at midnight UTC.
+             */
+            @Override
+            long getNextChangeTime(@NonNull final RateState state, final long currentTime) {
+                return windowRequirements.isEmpty() || !isMet(state, currentTime) ? Long.MAX_VALUE
+                        : ((currentTime / DAY_IN_MILLIS) + 1) * DAY_IN_MILLIS;
+            }
+        }, new BuiltInCondition("365_day_period_dialog_launch_times") {
+            @Override
+            public int getCost() {
+                return dialogLaunchTimes == Short.MAX_VALUE ? 1 : 8;
+            }
+
+            @Override
+            public boolean isMet(@NonNull final RateState state, final long currentTime) {
+                return ((dialogLaunchTimes == Short.MAX_VALUE) || (state.get365DayPeriodDialogLaunchTimes(currentTime) < dialogLaunchTimes));
+            }
+
+            /**
+             * Launches only leave the window, a met condition stays met. Otherwise the oldest day leaves at midnight UTC.
+             */
+            @Override
+            long getNextChangeTime(@NonNull final RateState state, final long currentTime) {
+                return isMet(state, currentTime) ? Long.MAX_VALUE : ((currentTime / DAY_IN_MILLIS) + 1) * DAY_IN_MILLIS;
+            }
+        }};
+        for (BuiltInCondition condition : builtInConditions) {
+            conditions.add(condition);
+        }
+    }
+
+    /**
+     * A built-in condition, named so that a rejection can be told apart in logs and metrics
+     */
+    private abstract static class BuiltInCondition implements RateCondition {
+
+        private final String name;
+
+        BuiltInCondition(@NonNull final String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the earliest time after {@code currentTime} the condition could flip without a state mutation,
+         * Long.MAX_VALUE if never
+         */
+        long getNextChangeTime(@NonNull final RateState state, final long currentTime) {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The minimum count of the launches or of a custom event within a sliding window
+     */
+    private static final class WindowRequirement {
+
+        /**
+         * The event name, null for the launches
+         */
+        private final String eventName;
+
+        private final short days;
+
+        private final int minimumCount;
+
+        WindowRequirement(final String eventName, final short days, final int minimumCount) {
+            this.eventName = eventName;
+            this.days = days;
+            this.minimumCount = minimumCount;
+        }
+    }
+
+    /**
+     * A decision and the conditions it stays valid under, immutable
+     */
+    private static final class Decision {
+
+        private final RateState state;
+
+        private final int modCount;
+
+        private final int configVersion;
+
+        private final long time;
+
+        private final long validUntil;
+
+        private final boolean isMet;
+
+        private final RateCondition rejectedBy;
+
+        Decision(final RateState state, final int modCount, final int configVersion, final long time,
+                 final long validUntil, final boolean isMet, final RateCondition rejectedBy) {
+            this.state = state;
+            this.modCount = modCount;
+            this.configVersion = configVersion;
+            this.time = time;
+            this.validUntil = validUntil;
+            this.isMet = isMet;
+            this.rejectedBy = rejectedBy;
+        }
+    }
+
+    private static boolean isOverDate(final long currentTime, final long targetDate, final byte threshold) {
+        return currentTime - targetDate >= threshold * DAY_IN_MILLIS;
+    }
+
+    /**
+     * @return when {@link #isOverDate(long, long, byte)} becomes true, Long.MAX_VALUE if it already is
+     */
+    private static long getOverDate(final long currentTime, final long targetDate, final byte threshold) {
+        final long overDate = targetDate + (threshold * DAY_IN_MILLIS);
+        return (threshold == 0) || (currentTime >= overDate) ? Long.MAX_VALUE : overDate;
+    }
+
+    /**
+     * @return the earliest time after {@code currentTime} the decision could change without a state mutation,
+     * {@code currentTime} if unknown
+     */
+    private long getNextChangeTime(@NonNull final RateState state, final long currentTime, @Nullable final RateCondition rejectedBy) {
+        if (rejectedBy != null) {
+            // the decision can't change before the rejecting condition flips
+            return rejectedBy instanceof BuiltInCondition ? ((BuiltInCondition) rejectedBy).getNextChangeTime(state, currentTime) : currentTime;
+        }
+        if (customConditionsNumber > 0) {
+            return currentTime;
+        }
+        long nextChangeTime = Long.MAX_VALUE;
+        for (BuiltInCondition condition : builtInConditions) {
+            nextChangeTime = Math.min(nextChangeTime, condition.getNextChangeTime(state, currentTime));
+        }
+        return nextChangeTime;
+    }
+
+    /**
+     * Set Short.MAX_VALUE for unlimited occurrences of the display of the dialog within a 365-day period
+     */
+    public RateEngine set365DayPeriodMaxNumberDialogLaunchTimes(final short dialogLaunchTimes) {
+        this.dialogLaunchTimes = dialogLaunchTimes;
+        configVersion++;
+        return this;
+    }
+
+    public RateEngine setLaunchTimes(final byte appLaunchTimes) {
+        return setLaunchTimes((int) appLaunchTimes);
+    }
+
+    public RateEngine setLaunchTimes(final int appLaunchTimes) {
+        this.appLaunchTimes = appLaunchTimes;
+        configVersion++;
+        return this;
+    }
+
+    public RateEngine setInstallDays(final byte installDate) {
+        this.installDate = installDate;
+        configVersion++;
+        return this;
+    }
+
+    public RateEngine setRemindInterval(final byte remindInterval) {
+        this.remindInterval = remindInterval;
+        configVersion++;
+        return this;
+    }
+
+    public RateEngine setMinimumEventCount(@NonNull final String eventName, final short minimumCount) {
+        return setMinimumEventCount(eventName, (int) minimumCount);
+    }
+
+    public RateEngine setMinimumEventCount(@NonNull final String eventName, final int minimumCount) {
+        customEventsCounts.put(eventName, minimumCount);
+        configVersion++;
+        return this;
+    }
+
+    /**
+     * The launches are counted in the window once it's tracked, see {@link RateStorage#trackLaunchTimesInWindow(short)}.
+     *
+     * @param minimumCount the minimum number of launches within the last {@code days} days
+     * @param days the window length in days, &gt; 0
+     */
+    public RateEngine setMinimumLaunchTimesInWindow(final int minimumCount, final short days) {
+        return setMinimumCountInWindow(null, minimumCount, days);
+    }
+
+    /**
+     * The events are counted in the window once it's tracked, see {@link RateStorage#trackEventCountInWindow(String, short)}.
+     *
+     * @param minimumCount the minimum number of {@code eventName} events within the last {@code days} days
+     * @param days the window length in days, &gt; 0
+     */
+    public RateEngine setMinimumEventCountInWindow(@NonNull final String eventName, final int minimumCount, final short days) {
+        return setMinimumCountInWindow(eventName, minimumCount, days);
+    }
+
+    private RateEngine setMinimumCountInWindow(final String eventName, final int minimumCount, final short days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("The window length must be > 0 days");
+        }
+        windowRequirements.put(WindowCounter.getKey(eventName, days), new WindowRequirement(eventName, days, minimumCount));
+        configVersion++;
+        return this;
+    }
+
+    /**
+     * Starts tracking in {@code storage} the windows of the conditions set by
+     * {@link #setMinimumLaunchTimesInWindow(int, short)} and {@link #setMinimumEventCountInWindow(String, int, short)}.
+     */
+    void trackWindows(@NonNull final RateStorage storage) {
+        for (WindowRequirement requirement : windowRequirements.values()) {
+            if (requirement.eventName == null) {
+                storage.trackLaunchTimesInWindow(requirement.days);
+            } else {
+                storage.trackEventCountInWindow(requirement.eventName, requirement.days);
+            }
+        }
+    }
+
+    public RateEngine setRemindLaunchTimes(final byte remindLaunchTimes) {
+        this.remindLaunchTimes = remindLaunchTimes;
+        configVersion++;
+        return this;
+    }
+
+    /**
+     * Adds a condition that must be met to show the rate dialog, in addition to the built-in ones.<br>
+     * Conditions are evaluated cheapest and most selective first, see {@link RateCondition#getCost()}.
+     */
+    public RateEngine addCondition(@NonNull final RateCondition condition) {
+        if (conditions.add(condition)) {
+            customConditionsNumber++;
+            configVersion++;
+        }
+        return this;
+    }
+
+    public RateEngine removeCondition(@NonNull final RateCondition condition) {
+        if (conditions.remove(condition)) {
+            customConditionsNumber--;
+            configVersion++;
+        }
+        return this;
+    }
+
+    /**
+     * @param state the AppRate state snapshot
+     * @param currentTime the current time in milliseconds
+     * @return true if every condition is met
+     */
+    public boolean shouldShowRateDialog(@NonNull final RateState state, final long currentTime) {
+        final int modCount = state.getModCount();
+        final int currentConfigVersion = configVersion;
+        final Decision decision = lastDecision;
+        if ((decision != null) && (decision.state == state) && (decision.modCount == modCount)
+                && (decision.configVersion == currentConfigVersion)
+                && (currentTime >= decision.time) && (currentTime < decision.validUntil)) {
+            return decision.isMet;
+        }
+        final boolean isMet = conditions.isMet(state, currentTime);
+        final RateCondition rejectedBy = isMet ? null : conditions.getLastRejectedBy();
+        lastDecision = new Decision(state, modCount, currentConfigVersion, currentTime,
+                getNextChangeTime(state, currentTime, rejectedBy), isMet, rejectedBy);
+        return isMet;
+    }
+
+    /**
+     * @return the condition that rejected the last evaluation, null if it passed
+     */
+    @Nullable
+    RateCondition getLastRejectedBy() {
+        final Decision decision = lastDecision;
+        return decision == null ? null : decision.rejectedBy;
+    }
+
+    /**
+     * @return the earliest time the last decision could change without a state mutation or a configuration change,
+     * Long.MAX_VALUE if never or if it depends on a condition added by the app
+     */
+    long getNextDecisionChangeTime() {
+        final Decision decision = lastDecision;
+        return (decision == null) || (decision.validUntil <= decision.time) ? Long.MAX_VALUE : decision.validUntil;
+    }
+}
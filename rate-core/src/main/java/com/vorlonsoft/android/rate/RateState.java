@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * In-memory snapshot of the persisted AppRate state.<br>
+ * Loaded once by {@link RateStorage} and kept coherent by its setters (write-through),
+ * so the show-dialog checks are plain field reads. Read-only for apps, see {@link RateCondition}.
+ */
+public final class RateState {
+
+    private final RateCounter launchTimes = new RateCounter(0);
+
+    private final DayBucketRing dialogLaunchTimesHistory;
+
+    private volatile boolean isAgreeShowDialog = true;
+
+    private volatile long dialogFirstLaunchTime = 0L;
+
+    private volatile long installDate = 0L;
+
+    private volatile long remindInterval = 0L;
+
+    private final EventCounters customEventsCounts;
+
+    /**
+     * The tracked sliding windows, copy-on-write
+     */
+    private volatile WindowCounter[] windows = new WindowCounter[0];
+
+    /**
+     * Incremented by every mutation, see {@link #getModCount()}
+     */
+    private final AtomicInteger modCount = new AtomicInteger();
+
+    RateState(@NonNull final DayBucketRing dialogLaunchTimesHistory, @NonNull final EventCounters customEventsCounts) {
+        this.dialogLaunchTimesHistory = dialogLaunchTimesHistory;
+        this.customEventsCounts = customEventsCounts;
+    }
+
+    /**
+     * @param currentTime the current time in milliseconds
+     * @return the number of dialog launches within the 365 days ending at {@code currentTime}
+     */
+    public long get365DayPeriodDialogLaunchTimes(final long currentTime) {
+        synchronized (dialogLaunchTimesHistory) {
+            return dialogLaunchTimesHistory.sum(currentTime / DAY_IN_MILLIS);
+        }
+    }
+
+    /**
+     * @return the encoded history to persist
+     */
+    @NonNull
+    String increment365DayPeriodDialogLaunchTimes(final long currentTime) {
+        synchronized (dialogLaunchTimesHistory) {
+            dialogLaunchTimesHistory.increment(currentTime / DAY_IN_MILLIS);
+            markModified();
+            return dialogLaunchTimesHistory.encode();
+        }
+    }
+
+    void clear365DayPeriodDialogLaunchTimes() {
+        synchronized (dialogLaunchTimesHistory) {
+            dialogLaunchTimesHistory.clear();
+        }
+        markModified();
+    }
+
+    /**
+     * The first call for an event reads it from the storage, see {@link EventCounters}.
+     */
+    public int getCustomEventCount(final String eventName) {
+        return customEventsCounts.get(eventName);
+    }
+
+    /**
+     * @param days the window length in days
+     * @param currentTime the current time in milliseconds
+     * @return the launches within the {@code days} days ending at {@code currentTime},
+     * 0 if the window isn't tracked, see {@link RateStorage#trackLaunchTimesInWindow(short)}
+     */
+    public long getLaunchTimesInWindow(final short days, final long currentTime) {
+        return getCountInWindow(null, days, currentTime);
+    }
+
+    /**
+     * @param eventName the custom event name
+     * @param days the window length in days
+     * @param currentTime the current time in milliseconds
+     * @return the events within the {@code days} days ending at {@code currentTime},
+     * 0 if the window isn't tracked, see {@link RateStorage#trackEventCountInWindow(String, short)}
+     */
+    public long getCustomEventCountInWindow(@NonNull final String eventName, final short days, final long currentTime) {
+        return getCountInWindow(eventName, days, currentTime);
+    }
+
+    /**
+     * @param eventName the custom event name, null for the launches
+     */
+    long getCountInWindow(@Nullable final String eventName, final short days, final long currentTime) {
+        for (WindowCounter window : windows) {
+            if (window.isOf(eventName, days)) {
+                return window.sum(currentTime / DAY_IN_MILLIS);
+            }
+        }
+        return 0L;
+    }
+
+    @NonNull
+    WindowCounter[] getWindows() {
+        return windows;
+    }
+
+    void setWindows(@NonNull final WindowCounter[] windows) {
+        this.windows = windows;
+        markModified();
+    }
+
+    /**
+     * @return the custom events counters, read lazily on first use
+     */
+    @NonNull
+    EventCounters getCustomEventsCounts() {
+        return customEventsCounts;
+    }
+
+    public boolean isAgreeShowDialog() {
+        return isAgreeShowDialog;
+    }
+
+    void setAgreeShowDialog(final boolean isAgreeShowDialog) {
+        this.isAgreeShowDialog = isAgreeShowDialog;
+        markModified();
+    }
+
+    public int getLaunchTimes() {
+        return launchTimes.get();
+    }
+
+    RateCounter getLaunchTimesCounter() {
+        return launchTimes;
+    }
+
+    public long getDialogFirstLaunchTime() {
+        return dialogFirstLaunchTime;
+    }
+
+    void setDialogFirstLaunchTime(final long dialogFirstLaunchTime) {
+        this.dialogFirstLaunchTime = dialogFirstLaunchTime;
+        markModified();
+    }
+
+    public long getInstallDate() {
+        return installDate;
+    }
+
+    void setInstallDate(final long installDate) {
+        this.installDate = installDate;
+        markModified();
+    }
+
+    public long getRemindInterval() {
+        return remindInterval;
+    }
+
+    void setRemindInterval(final long remindInterval) {
+        this.remindInterval = remindInterval;
+        markModified();
+    }
+
+    /**
+     * Called after a mutation made through {@link #getLaunchTimesCounter()}, the other setters call it themselves.
+     */
+    void markModified() {
+        modCount.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes whenever the state, custom events included, is mutated
+     */
+    int getModCount() {
+        return modCount.get() + customEventsCounts.getModCount();
+    }
+}
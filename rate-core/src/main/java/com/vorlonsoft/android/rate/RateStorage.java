@@ -0,0 +1,524 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * Owns the {@link RateState}: loads it from a {@link KeyValueStore} on first use
+ * (a single {@link KeyValueStore#getAll()}) and writes every mutation through to the store.
+ */
+public final class RateStorage {
+
+    static final short YEAR_IN_DAYS = (short) 365;
+
+    /**
+     * The legacy string-encoded 365-day history, migrated to PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY on first read
+     */
+    private static final String PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES = "androidrate_365_day_period_dialog_launch_times";
+
+    /**
+     * The Base64-encoded {@link DayBucketRing} of the dialog launches within the last 365 days
+     */
+    private static final String PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY = "androidrate_dialog_launch_times_history";
+
+    private static final String PREF_KEY_DIALOG_FIRST_LAUNCH_TIME = "androidrate_dialog_first_launch_time";
+
+    private static final String PREF_KEY_INSTALL_DATE = "androidrate_install_date";
+
+    private static final String PREF_KEY_IS_AGREE_SHOW_DIALOG = "androidrate_is_agree_show_dialog";
+
+    private static final String PREF_KEY_LAUNCH_TIMES = "androidrate_launch_times";
+
+    /**
+     * Present once the launch times are known not to be a wrapped-around short, see {@link RateCounter#fromLegacyCount(int)}
+     */
+    private static final String PREF_KEY_WIDE_COUNTERS = "androidrate_wide_counters";
+
+    private static final String PREF_KEY_REMIND_INTERVAL = "androidrate_remind_interval";
+
+    private static final Logger LOGGER = Logger.getLogger("ANDROIDRATE");
+
+    private final KeyValueStore store;
+
+    private volatile RateClock clock;
+
+    private final EventCounters customEventsCounts;
+
+    private volatile RateState state = null;
+
+    private volatile OnChangeListener onChangeListener = null;
+
+    /**
+     * The sliding windows to track, copy-on-write, guarded by this
+     */
+    private WindowCounter[] windows = new WindowCounter[0];
+
+    /**
+     * Notified after every mutation made through this storage, on the mutating thread.
+     */
+    public interface OnChangeListener {
+
+        void onChange();
+
+    }
+
+    /**
+     * @param store the persistent storage, read once on first use
+     * @param clock the time source of the install date, the remind interval and the dialog launch times
+     */
+    public RateStorage(@NonNull final KeyValueStore store, @NonNull final RateClock clock) {
+        this(store, clock, new EventCounters());
+    }
+
+    /**
+     * @param store the persistent storage shared with other named storages, read once on first use
+     * @param name the name of this storage, its keys are prefixed with {@code name + ':'}
+     * @param clock the time source of the install date, the remind interval and the dialog launch times
+     */
+    public RateStorage(@NonNull final KeyValueStore store, @NonNull final String name, @NonNull final RateClock clock) {
+        this(new NamespacedKeyValueStore(store, name + ':'), clock, new EventCounters());
+    }
+
+    RateStorage(@NonNull final KeyValueStore store, @NonNull final RateClock clock, @NonNull final EventCounters customEventsCounts) {
+        this.store = store;
+        this.clock = clock;
+        this.customEventsCounts = customEventsCounts;
+    }
+
+    /**
+     * Converts the legacy ":day y year-count:" history, which was kept relative to the dialog
+     * first launch time, to a ring of absolute days. Runs once, the legacy key is removed after.
+     */
+    private DayBucketRing migrateLegacyDialogLaunchTimes(final String legacyDialogLaunchTimes,
+                                                         final long dialogFirstLaunchTime) {
+        final DayBucketRing history = new DayBucketRing(YEAR_IN_DAYS);
+        int entryStart = 0;
+        int entryEnd;
+        while ((entryEnd = legacyDialogLaunchTimes.indexOf(':', entryStart + 1)) > 0) {
+            final int yearIndex = legacyDialogLaunchTimes.indexOf('y', entryStart);
+            final int countIndex = legacyDialogLaunchTimes.indexOf('-', entryStart);
+            if ((entryStart < yearIndex) && (yearIndex < countIndex) && (countIndex < entryEnd)) {
+                try {
+                    final int day = Integer.parseInt(legacyDialogLaunchTimes.substring(entryStart + 1, yearIndex));
+                    final int year = Integer.parseInt(legacyDialogLaunchTimes.substring(yearIndex + 1, countIndex));
+                    final int count = Integer.parseInt(legacyDialogLaunchTimes.substring(countIndex + 1, entryEnd));
+                    history.add((dialogFirstLaunchTime + (((long) year * YEAR_IN_DAYS) + day) * DAY_IN_MILLIS) / DAY_IN_MILLIS, count);
+                } catch (NumberFormatException e) {
+                    LOGGER.log(Level.WARNING, "Skipping malformed 365-day period dialog launch times entry", e);
+                }
+            }
+            entryStart = entryEnd;
+        }
+        store.putString(PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY, history.encode());
+        store.remove(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES);
+        return history;
+    }
+
+    private static long getLong(final Map<String, ?> values, final String key, final long defValue) {
+        final Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : defValue;
+    }
+
+    private RateState load() {
+        final Map<String, ?> values = store.getAll();
+        final long dialogFirstLaunchTime = getLong(values, PREF_KEY_DIALOG_FIRST_LAUNCH_TIME, 0L);
+
+        DayBucketRing history = null;
+        final Object encoded = values.get(PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY);
+        if (encoded instanceof String) {
+            history = DayBucketRing.decode((String) encoded, YEAR_IN_DAYS);
+            if (history == null) {
+                LOGGER.warning("Failed to decode 365-day period dialog launch times, history is reset");
+            }
+        } else {
+            final Object legacyDialogLaunchTimes = values.get(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES);
+            if (legacyDialogLaunchTimes instanceof String) {
+                history = migrateLegacyDialogLaunchTimes((String) legacyDialogLaunchTimes, dialogFirstLaunchTime);
+            }
+        }
+
+        final RateState rateState = new RateState(history == null ? new DayBucketRing(YEAR_IN_DAYS) : history, customEventsCounts);
+        final Object isAgreeShowDialog = values.get(PREF_KEY_IS_AGREE_SHOW_DIALOG);
+        rateState.setAgreeShowDialog(!(isAgreeShowDialog instanceof Boolean) || (Boolean) isAgreeShowDialog);
+        final int launchTimes = (int) getLong(values, PREF_KEY_LAUNCH_TIMES, 0L);
+        if (values.containsKey(PREF_KEY_WIDE_COUNTERS)) {
+            rateState.getLaunchTimesCounter().set(launchTimes);
+        } else {
+            rateState.getLaunchTimesCounter().set(RateCounter.fromLegacyCount(launchTimes));
+            if (launchTimes < 0) {
+                store.putInt(PREF_KEY_LAUNCH_TIMES, rateState.getLaunchTimesCounter().get());
+            }
+            store.putBoolean(PREF_KEY_WIDE_COUNTERS, true);
+        }
+        rateState.setDialogFirstLaunchTime(dialogFirstLaunchTime);
+        rateState.setInstallDate(getLong(values, PREF_KEY_INSTALL_DATE, 0L));
+        rateState.setRemindInterval(getLong(values, PREF_KEY_REMIND_INTERVAL, 0L));
+        customEventsCounts.load(store, values);
+        for (WindowCounter window : windows) {
+            window.load(values.get(window.getKey()));
+        }
+        rateState.setWindows(windows);
+        return rateState;
+    }
+
+    /**
+     * Schedules a counter whose value has changed for the asynchronous write.
+     */
+    private void persistCounter(final String key, final RateCounter counter) {
+        if (counter.markDirty()) {
+            store.putCounter(key, counter);
+        }
+    }
+
+    /**
+     * Adds {@code count} to the windows of {@code eventName}, null for the launches.
+     */
+    private void addToWindows(final RateState rateState, final String eventName, final int count) {
+        addToWindows(rateState, eventName, count, null);
+    }
+
+    /**
+     * @param values the values of a transaction the windows are written with, null to write them at once
+     */
+    private void addToWindows(final RateState rateState, final String eventName, final int count,
+                              @Nullable final Map<String, Object> values) {
+        final WindowCounter[] stateWindows = rateState.getWindows();
+        if (stateWindows.length == 0) {
+            return;
+        }
+        final long day = clock.currentTimeMillis() / DAY_IN_MILLIS;
+        for (WindowCounter window : stateWindows) {
+            if (window.isOf(eventName)) {
+                window.add(day, count);
+                if (values != null) {
+                    window.markDirty();
+                    values.put(window.getKey(), window);
+                } else if (window.markDirty()) {
+                    store.putEncoded(window.getKey(), window);
+                }
+            }
+        }
+    }
+
+    private void clearWindows(final WindowCounter[] windowsToClear, final boolean isLaunchTimes, final boolean isEvents) {
+        clearWindows(windowsToClear, isLaunchTimes, isEvents, null);
+    }
+
+    /**
+     * @param values the values of a transaction the removals are written with, null to remove at once
+     */
+    private void clearWindows(final WindowCounter[] windowsToClear, final boolean isLaunchTimes, final boolean isEvents,
+                              @Nullable final Map<String, Object> values) {
+        for (WindowCounter window : windowsToClear) {
+            if (window.isOf(null) ? isLaunchTimes : isEvents) {
+                window.clear();
+                if (values != null) {
+                    values.put(window.getKey(), null);
+                } else {
+                    store.remove(window.getKey());
+                }
+            }
+        }
+    }
+
+    private synchronized void trackWindow(final String eventName, final short days) {
+        for (WindowCounter window : windows) {
+            if (window.isOf(eventName, days)) {
+                return;
+            }
+        }
+        final WindowCounter window = new WindowCounter(eventName, days);
+        final RateState rateState = state;
+        if (rateState != null) {
+            window.load(store.getAll().get(window.getKey()));
+        }
+        final WindowCounter[] newWindows = new WindowCounter[windows.length + 1];
+        System.arraycopy(windows, 0, newWindows, 0, windows.length);
+        newWindows[windows.length] = window;
+        windows = newWindows;
+        if (rateState != null) {
+            rateState.setWindows(newWindows);
+        }
+    }
+
+    /**
+     * Starts counting the launches in a sliding window of {@code days} days, does nothing if it's already counted.
+     * The launches before the first call aren't in the window. Doesn't load the state.
+     *
+     * @param days the window length in days, &gt; 0
+     */
+    public void trackLaunchTimesInWindow(final short days) {
+        trackWindow(null, days);
+    }
+
+    /**
+     * Starts counting {@code eventName} in a sliding window of {@code days} days, does nothing if it's already counted.
+     * The events before the first call aren't in the window. Doesn't load the state.
+     *
+     * @param days the window length in days, &gt; 0
+     */
+    public void trackEventCountInWindow(@NonNull final String eventName, final short days) {
+        trackWindow(eventName, days);
+    }
+
+    /**
+     * Returns the in-memory state, loading it from the store on first use.
+     *
+     * @return the state snapshot, coherent with every RateStorage setter
+     */
+    @NonNull
+    public RateState getState() {
+        RateState rateState = state;
+        if (rateState == null) {
+            synchronized (this) {
+                rateState = state;
+                if (rateState == null) {
+                    rateState = load();
+                    state = rateState;
+                }
+            }
+        }
+        return rateState;
+    }
+
+    /**
+     * @return true if {@link #getState()} won't touch the store
+     */
+    public boolean isLoaded() {
+        return state != null;
+    }
+
+    @NonNull
+    public RateClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @param clock the time source of every date set from now on and of the decision time
+     */
+    public void setClock(@NonNull final RateClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @param listener the listener of the mutations, null to remove it
+     */
+    public void setOnChangeListener(@Nullable final OnChangeListener listener) {
+        onChangeListener = listener;
+    }
+
+    private void notifyChange() {
+        final OnChangeListener listener = onChangeListener;
+        if (listener != null) {
+            listener.onChange();
+        }
+    }
+
+    /**
+     * Clears the state and its keys in the store, the other keys of a shared store are kept.
+     */
+    public synchronized void clear() {
+        customEventsCounts.clear();
+        clearWindows(windows, true, true);
+        final RateState rateState = new RateState(new DayBucketRing(YEAR_IN_DAYS), customEventsCounts);
+        rateState.setWindows(windows);
+        state = rateState;
+        store.remove(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES);
+        store.remove(PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY);
+        store.remove(PREF_KEY_DIALOG_FIRST_LAUNCH_TIME);
+        store.remove(PREF_KEY_INSTALL_DATE);
+        store.remove(PREF_KEY_IS_AGREE_SHOW_DIALOG);
+        store.remove(PREF_KEY_LAUNCH_TIMES);
+        store.remove(PREF_KEY_REMIND_INTERVAL);
+        notifyChange();
+    }
+
+    public boolean isFirstLaunch() {
+        return getState().getInstallDate() == 0L;
+    }
+
+    public synchronized void setFirstLaunch() {
+        final RateState rateState = getState();
+        final long installDate = clock.currentTimeMillis();
+        rateState.clear365DayPeriodDialogLaunchTimes();
+        store.remove(PREF_KEY_365_DAY_PERIOD_DIALOG_LAUNCH_TIMES);
+        store.remove(PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY);
+        rateState.setDialogFirstLaunchTime(0L);
+        store.putLong(PREF_KEY_DIALOG_FIRST_LAUNCH_TIME, 0L);
+        rateState.setInstallDate(installDate);
+        store.putLong(PREF_KEY_INSTALL_DATE, installDate);
+        if (rateState.isAgreeShowDialog()) {                          //if (get() == true) set(true); - NOT error!
+            store.putBoolean(PREF_KEY_IS_AGREE_SHOW_DIALOG, true);
+        }
+        rateState.getLaunchTimesCounter().set(1);
+        rateState.markModified();
+        persistCounter(PREF_KEY_LAUNCH_TIMES, rateState.getLaunchTimesCounter());
+        addToWindows(rateState, null, 1);
+        rateState.setRemindInterval(0L);
+        store.putLong(PREF_KEY_REMIND_INTERVAL, 0L);
+        notifyChange();
+    }
+
+    public synchronized void increment365DayPeriodDialogLaunchTimes() {
+        store.putString(PREF_KEY_DIALOG_LAUNCH_TIMES_HISTORY,
+                getState().increment365DayPeriodDialogLaunchTimes(clock.currentTimeMillis()));
+        notifyChange();
+    }
+
+    public long get365DayPeriodDialogLaunchTimes() {
+        return getState().get365DayPeriodDialogLaunchTimes(clock.currentTimeMillis());
+    }
+
+    public void setCustomEventCount(@NonNull final String eventName, final int eventCount) {
+        getState().getCustomEventsCounts().set(eventName, eventCount);
+        notifyChange();
+    }
+
+    /**
+     * Lock-free increment, safe to call from any number of threads at the same time.
+     *
+     * @param eventName the custom event name
+     */
+    public void incrementCustomEventCount(@NonNull final String eventName) {
+        final RateState rateState = getState();
+        rateState.getCustomEventsCounts().increment(eventName);
+        addToWindows(rateState, eventName, 1);
+        notifyChange();
+    }
+
+    /**
+     * Resets every custom event count to zero.
+     */
+    public void clearCustomEventCounts() {
+        final RateState rateState = getState();
+        rateState.getCustomEventsCounts().clear();
+        clearWindows(rateState.getWindows(), false, true);
+        notifyChange();
+    }
+
+    public synchronized void setDialogFirstLaunchTime() {
+        final long dialogFirstLaunchTime = clock.currentTimeMillis();
+        getState().setDialogFirstLaunchTime(dialogFirstLaunchTime);
+        store.putLong(PREF_KEY_DIALOG_FIRST_LAUNCH_TIME, dialogFirstLaunchTime);
+        notifyChange();
+    }
+
+    /**
+     * Set agree flag about show dialog.<br>
+     * If it is false, rate dialog will never shown unless data is cleared.
+     *
+     * @param isAgree agree with showing rate dialog
+     */
+    public synchronized void setAgreeShowDialog(final boolean isAgree) {
+        getState().setAgreeShowDialog(isAgree);
+        store.putBoolean(PREF_KEY_IS_AGREE_SHOW_DIALOG, isAgree);
+        if (!isAgree) {
+            // the user won't be asked again, this must survive an immediate process death
+            store.commit();
+        }
+        notifyChange();
+    }
+
+    public void setLaunchTimes(final int launchTimes) {
+        final RateState rateState = getState();
+        final RateCounter counter = rateState.getLaunchTimesCounter();
+        counter.set(launchTimes);
+        rateState.markModified();
+        persistCounter(PREF_KEY_LAUNCH_TIMES, counter);
+        notifyChange();
+    }
+
+    /**
+     * Lock-free increment, safe to call from any number of threads at the same time.
+     */
+    public void incrementLaunchTimes() {
+        final RateState rateState = getState();
+        final RateCounter counter = rateState.getLaunchTimesCounter();
+        counter.incrementAndGet();
+        rateState.markModified();
+        persistCounter(PREF_KEY_LAUNCH_TIMES, counter);
+        addToWindows(rateState, null, 1);
+        notifyChange();
+    }
+
+    public synchronized void setRemindInterval() {
+        final long remindInterval = clock.currentTimeMillis();
+        getState().setRemindInterval(remindInterval);
+        store.putLong(PREF_KEY_REMIND_INTERVAL, remindInterval);
+        notifyChange();
+    }
+
+    /**
+     * @return a new transaction, its mutations are applied together by {@link RateTransaction#commit()}
+     */
+    @NonNull
+    public RateTransaction edit() {
+        return new RateTransaction(this);
+    }
+
+    /**
+     * Applies a transaction in one write: its event counts, windows and preference values are
+     * collected in one map and handed to a single {@link KeyValueStore#putAll(Map)}. A separate
+     * event store, like the memory-mapped file of the Android library, writes the event counts as
+     * one batch under its own lock right before that putAll, see
+     * {@link EventCounters#apply(boolean, Map, Map)}.
+     *
+     * @param transaction the transaction to apply
+     */
+    synchronized void commit(@NonNull final RateTransaction transaction) {
+        final RateState rateState = getState();
+        final Map<String, Object> values = new HashMap<>();
+        if (transaction.isEventsCleared) {
+            clearWindows(rateState.getWindows(), false, true, values);
+        }
+        rateState.getCustomEventsCounts().apply(transaction.isEventsCleared, transaction.eventChanges, values);
+        for (Map.Entry<String, RateTransaction.EventChange> entry : transaction.eventChanges.entrySet()) {
+            final RateTransaction.EventChange eventChange = entry.getValue();
+            if (!eventChange.isSet && (eventChange.value != 0)) {
+                addToWindows(rateState, entry.getKey(), eventChange.value, values);
+            }
+        }
+        final RateCounter launchTimesCounter = rateState.getLaunchTimesCounter();
+        if (transaction.isLaunchTimesSet || (transaction.launchTimes != 0)) {
+            if (transaction.isLaunchTimesSet) {
+                launchTimesCounter.set(transaction.launchTimes);
+            } else {
+                launchTimesCounter.addAndGet(transaction.launchTimes);
+                addToWindows(rateState, null, transaction.launchTimes, values);
+            }
+            rateState.markModified();
+            launchTimesCounter.markDirty();
+            values.put(PREF_KEY_LAUNCH_TIMES, launchTimesCounter);
+        }
+        if (transaction.isAgreeShowDialog != null) {
+            rateState.setAgreeShowDialog(transaction.isAgreeShowDialog);
+            values.put(PREF_KEY_IS_AGREE_SHOW_DIALOG, transaction.isAgreeShowDialog);
+        }
+        if (transaction.isRemindIntervalSet) {
+            final long remindInterval = clock.currentTimeMillis();
+            rateState.setRemindInterval(remindInterval);
+            values.put(PREF_KEY_REMIND_INTERVAL, remindInterval);
+        }
+        if (!values.isEmpty()) {
+            store.putAll(values);
+        }
+        if (Boolean.FALSE.equals(transaction.isAgreeShowDialog)) {
+            // the user won't be asked again, this must survive an immediate process death
+            store.commit();
+        }
+        notifyChange();
+    }
+}
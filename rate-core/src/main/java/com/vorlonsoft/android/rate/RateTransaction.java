@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A batch of state mutations, recorded in memory and applied by {@link #commit()} under the
+ * {@link RateStorage} lock with a single change notification.<br>
+ * The event counts, their windows and the preference values are written by one
+ * {@link KeyValueStore#putAll(Map)}. When the event counts are kept by a separate event store,
+ * they are written as one batch under its lock right before that putAll.<br>
+ * Not thread-safe, record it on one thread. Obtained from {@link RateStorage#edit()}.
+ */
+public final class RateTransaction {
+
+    private final RateStorage storage;
+
+    /**
+     * The event changes in the order they were first recorded, see {@link EventChange}
+     */
+    final Map<String, EventChange> eventChanges = new LinkedHashMap<>();
+
+    boolean isEventsCleared = false;
+
+    Boolean isAgreeShowDialog = null;
+
+    boolean isLaunchTimesSet = false;
+
+    int launchTimes = 0;
+
+    boolean isRemindIntervalSet = false;
+
+    /**
+     * A set count or the sum of the increments, like the pending events of the event store
+     */
+    static final class EventChange {
+
+        boolean isSet = false;
+
+        int value = 0;
+    }
+
+    RateTransaction(@NonNull final RateStorage storage) {
+        this.storage = storage;
+    }
+
+    private EventChange getEventChange(@NonNull final String eventName) {
+        EventChange eventChange = eventChanges.get(eventName);
+        if (eventChange == null) {
+            eventChange = new EventChange();
+            eventChanges.put(eventName, eventChange);
+        }
+        return eventChange;
+    }
+
+    @NonNull
+    public RateTransaction incrementEventCount(@NonNull final String eventName) {
+        final EventChange eventChange = getEventChange(eventName);
+        eventChange.value = RateCounter.saturatedAdd(eventChange.value, 1);
+        return this;
+    }
+
+    /**
+     * @param eventIncrements the number to add to the count of each event
+     */
+    @NonNull
+    public RateTransaction incrementEventCounts(@NonNull final Map<String, Integer> eventIncrements) {
+        for (Map.Entry<String, Integer> eventIncrement : eventIncrements.entrySet()) {
+            final EventChange eventChange = getEventChange(eventIncrement.getKey());
+            eventChange.value = RateCounter.saturatedAdd(eventChange.value, eventIncrement.getValue());
+        }
+        return this;
+    }
+
+    @NonNull
+    public RateTransaction setEventCountValue(@NonNull final String eventName, final int eventCount) {
+        final EventChange eventChange = getEventChange(eventName);
+        eventChange.isSet = true;
+        eventChange.value = eventCount;
+        return this;
+    }
+
+    /**
+     * Resets the counts of all custom events to zero, before the event changes recorded after this call.
+     */
+    @NonNull
+    public RateTransaction clearEventCounts() {
+        eventChanges.clear();
+        isEventsCleared = true;
+        return this;
+    }
+
+    @NonNull
+    public RateTransaction setAgreeShowDialog(final boolean isAgree) {
+        isAgreeShowDialog = isAgree;
+        return this;
+    }
+
+    @NonNull
+    public RateTransaction incrementLaunchTimes() {
+        launchTimes = RateCounter.saturatedAdd(launchTimes, 1);
+        return this;
+    }
+
+    @NonNull
+    public RateTransaction setLaunchTimes(final int launchTimes) {
+        isLaunchTimesSet = true;
+        this.launchTimes = launchTimes;
+        return this;
+    }
+
+    /**
+     * Restarts the remind interval at the commit time.
+     */
+    @NonNull
+    public RateTransaction setRemindInterval() {
+        isRemindIntervalSet = true;
+        return this;
+    }
+
+    /**
+     * Applies the recorded mutations in one write and forgets them, the transaction can be reused.
+     */
+    public void commit() {
+        storage.commit(this);
+        eventChanges.clear();
+        isEventsCleared = false;
+        isAgreeShowDialog = null;
+        isLaunchTimesSet = false;
+        launchTimes = 0;
+        isRemindIntervalSet = false;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * The outcome of a {@link PolicySimulator} run for one configuration: the prompt rate and the
+ * distributions of the time to the first prompt and of the number of prompts per user.
+ */
+public final class SimulationResult {
+
+    /**
+     * The users shown the dialog more times are counted in the last bucket of the prompts histogram
+     */
+    private static final byte MAX_PROMPTS_NUMBER = (byte) 16;
+
+    private long usersNumber = 0L;
+
+    private long promptedUsersNumber = 0L;
+
+    private long ratedUsersNumber = 0L;
+
+    private long declinedUsersNumber = 0L;
+
+    private long promptsNumber = 0L;
+
+    /**
+     * Index - whole days from the install to the first prompt, the last bucket holds the later ones
+     */
+    private final long[] firstPromptDays;
+
+    /**
+     * Index - prompts per user
+     */
+    private final long[] promptsPerUser = new long[MAX_PROMPTS_NUMBER + 1];
+
+    SimulationResult(final int maxDays) {
+        firstPromptDays = new long[maxDays + 1];
+    }
+
+    /**
+     * @param firstPromptDelay the milliseconds from the install to the first prompt, ignored if {@code promptsNumber == 0}
+     */
+    void addUser(final int promptsNumber, final long firstPromptDelay, final boolean isRated, final boolean isDeclined) {
+        usersNumber++;
+        this.promptsNumber += promptsNumber;
+        promptsPerUser[Math.min(promptsNumber, MAX_PROMPTS_NUMBER)]++;
+        if (promptsNumber > 0) {
+            promptedUsersNumber++;
+            firstPromptDays[(int) Math.min(firstPromptDelay / DAY_IN_MILLIS, firstPromptDays.length - 1)]++;
+        }
+        if (isRated) {
+            ratedUsersNumber++;
+        } else if (isDeclined) {
+            declinedUsersNumber++;
+        }
+    }
+
+    /**
+     * Adds {@code other} to this result, used to join the fork/join subtasks.
+     */
+    @NonNull
+    SimulationResult merge(@NonNull final SimulationResult other) {
+        usersNumber += other.usersNumber;
+        promptedUsersNumber += other.promptedUsersNumber;
+        ratedUsersNumber += other.ratedUsersNumber;
+        declinedUsersNumber += other.declinedUsersNumber;
+        promptsNumber += other.promptsNumber;
+        for (int i = 0; i < firstPromptDays.length; i++) {
+            firstPromptDays[i] += other.firstPromptDays[i];
+        }
+        for (int i = 0; i < promptsPerUser.length; i++) {
+            promptsPerUser[i] += other.promptsPerUser[i];
+        }
+        return this;
+    }
+
+    private static double getRate(final long number, final long total) {
+        return total == 0L ? 0.0 : (double) number / total;
+    }
+
+    public long getUsersNumber() {
+        return usersNumber;
+    }
+
+    public long getPromptsNumber() {
+        return promptsNumber;
+    }
+
+    /**
+     * @return the fraction of the users shown the dialog at least once
+     */
+    public double getPromptRate() {
+        return getRate(promptedUsersNumber, usersNumber);
+    }
+
+    /**
+     * @return the fraction of the users who clicked the rate button
+     */
+    public double getRatedRate() {
+        return getRate(ratedUsersNumber, usersNumber);
+    }
+
+    /**
+     * @return the fraction of the users who clicked the never button
+     */
+    public double getDeclinedRate() {
+        return getRate(declinedUsersNumber, usersNumber);
+    }
+
+    /**
+     * @param fraction the fraction of the prompted users, from 0 to 1
+     * @return the whole days from the install within which {@code fraction} of the prompted users
+     * were first shown the dialog, -1 if no user was
+     */
+    public int getFirstPromptDaysPercentile(final double fraction) {
+        if (promptedUsersNumber == 0L) {
+            return -1;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(fraction * promptedUsersNumber));
+        long count = 0L;
+        for (int day = 0; day < firstPromptDays.length; day++) {
+            count += firstPromptDays[day];
+            if (count >= rank) {
+                return day;
+            }
+        }
+        return firstPromptDays.length - 1;
+    }
+
+    /**
+     * @return index - whole days from the install to the first prompt, value - users;
+     * the last element counts the users first prompted that late or later
+     */
+    @NonNull
+    public long[] getFirstPromptDaysHistogram() {
+        return Arrays.copyOf(firstPromptDays, firstPromptDays.length);
+    }
+
+    /**
+     * @return index - prompts per user, value - users; the last element counts the users prompted that often or more
+     */
+    @NonNull
+    public long[] getPromptsPerUserHistogram() {
+        return Arrays.copyOf(promptsPerUser, promptsPerUser.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "users=%d prompted=%.4f rated=%.4f declined=%.4f prompts=%d firstPromptDays(p50=%d p90=%d p99=%d)",
+                usersNumber, getPromptRate(), getRatedRate(), getDeclinedRate(), promptsNumber,
+                getFirstPromptDaysPercentile(0.5), getFirstPromptDaysPercentile(0.9), getFirstPromptDaysPercentile(0.99));
+    }
+}
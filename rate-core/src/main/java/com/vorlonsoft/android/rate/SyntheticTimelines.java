@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.SplittableRandom;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * Synthetic {@link UserTimeline}s for {@link PolicySimulator}, generated on demand from the user index
+ * and the seed, so millions of users take no memory and every run replays the same users.<br>
+ * Each user gets an exponentially distributed activity around the mean launches per day, a Poisson
+ * number of launches every day at that rate and a Poisson number of events after each launch.
+ */
+public final class SyntheticTimelines implements PolicySimulator.Timelines {
+
+    private static final byte RESPONSES_NUMBER = (byte) 8;
+
+    private final int usersNumber;
+
+    private final long seed;
+
+    private short days = (short) 90;
+
+    private double launchesPerDay = 1.0;
+
+    private String eventName = null;
+
+    private double eventsPerLaunch = 0.0;
+
+    private double rateProbability = 0.2;
+
+    private double neverProbability = 0.3;
+
+    public SyntheticTimelines(final int usersNumber, final long seed) {
+        this.usersNumber = usersNumber;
+        this.seed = seed;
+    }
+
+    /**
+     * @param days the simulated days after the install, 90 by default
+     */
+    public SyntheticTimelines setDays(final short days) {
+        this.days = days;
+        return this;
+    }
+
+    /**
+     * @param launchesPerDay the mean launches per day across the users, 1 by default
+     */
+    public SyntheticTimelines setLaunchesPerDay(final double launchesPerDay) {
+        this.launchesPerDay = launchesPerDay;
+        return this;
+    }
+
+    /**
+     * @param eventName the custom event, null for none (the default)
+     * @param eventsPerLaunch the mean events after each launch
+     */
+    public SyntheticTimelines setEvent(@Nullable final String eventName, final double eventsPerLaunch) {
+        this.eventName = eventName;
+        this.eventsPerLaunch = eventsPerLaunch;
+        return this;
+    }
+
+    /**
+     * Sets the probabilities of the responses to each prompt, the user clicks "later" otherwise.
+     * 0.2 and 0.3 by default.
+     */
+    public SyntheticTimelines setResponseProbabilities(final double rateProbability, final double neverProbability) {
+        this.rateProbability = rateProbability;
+        this.neverProbability = neverProbability;
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return usersNumber;
+    }
+
+    /**
+     * Knuth's method, fine for the small means of the daily launches and events
+     */
+    private static int nextPoisson(@NonNull final SplittableRandom random, final double mean) {
+        final double limit = Math.exp(-mean);
+        int number = 0;
+        double product = random.nextDouble();
+        while ((product > limit) && (number < 1000)) {
+            number++;
+            product *= random.nextDouble();
+        }
+        return number;
+    }
+
+    @NonNull
+    @Override
+    public UserTimeline get(final int index) {
+        final SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+        final UserTimeline.Builder builder = new UserTimeline.Builder();
+        final double activity = -Math.log(1.0 - random.nextDouble()) * launchesPerDay;
+        builder.launch(random.nextLong(DAY_IN_MILLIS / 2));
+        for (short day = 0; day < days; day++) {
+            final int launchesNumber = nextPoisson(random, activity);
+            for (int launch = 0; launch < launchesNumber; launch++) {
+                final long launchTime = (day * DAY_IN_MILLIS) + (DAY_IN_MILLIS / 2) + (((launch * 2L) + 1L) * (DAY_IN_MILLIS / 2)) / (launchesNumber * 2L);
+                builder.launch(launchTime);
+                if (eventName != null) {
+                    final int eventsNumber = nextPoisson(random, eventsPerLaunch);
+                    for (int event = 0; event < eventsNumber; event++) {
+                        builder.event(launchTime + event + 1L, eventName);
+                    }
+                }
+            }
+        }
+        for (byte b = 0; b < RESPONSES_NUMBER; b++) {
+            final double response = random.nextDouble();
+            builder.respond(response < rateProbability ? UserTimeline.RESPONSE_RATE
+                    : response < rateProbability + neverProbability ? UserTimeline.RESPONSE_NEVER : UserTimeline.RESPONSE_LATER);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controllable clock for tests and simulations: the time only moves when it's set or advanced,
+ * so years of usage can be replayed in milliseconds.
+ */
+public final class TestRateClock implements RateClock {
+
+    private final AtomicLong currentTime;
+
+    public TestRateClock(final long currentTimeMillis) {
+        currentTime = new AtomicLong(currentTimeMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTime.get();
+    }
+
+    public TestRateClock setCurrentTimeMillis(final long currentTimeMillis) {
+        currentTime.set(currentTimeMillis);
+        return this;
+    }
+
+    public TestRateClock advance(final long millis) {
+        currentTime.addAndGet(millis);
+        return this;
+    }
+
+    public TestRateClock advanceDays(final int days) {
+        return advance(days * DAY_IN_MILLIS);
+    }
+}
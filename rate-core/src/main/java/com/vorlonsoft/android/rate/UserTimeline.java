@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A recorded or synthetic usage history replayed by {@link PolicySimulator}: the app launches and
+ * the custom events in time order, and the buttons the user clicks when the rate dialog is shown.
+ * Kept in primitive arrays, immutable.
+ */
+public final class UserTimeline {
+
+    public static final byte RESPONSE_RATE = (byte) 0;
+
+    public static final byte RESPONSE_LATER = (byte) 1;
+
+    public static final byte RESPONSE_NEVER = (byte) 2;
+
+    /**
+     * The milliseconds since the start of the simulation, non-decreasing
+     */
+    private final long[] times;
+
+    /**
+     * The custom event names, null for the launches
+     */
+    private final String[] eventNames;
+
+    private final byte[] responses;
+
+    private UserTimeline(@NonNull final Builder builder) {
+        times = Arrays.copyOf(builder.times, builder.actionsNumber);
+        eventNames = Arrays.copyOf(builder.eventNames, builder.actionsNumber);
+        responses = Arrays.copyOf(builder.responses, builder.responsesNumber);
+    }
+
+    int getActionsNumber() {
+        return times.length;
+    }
+
+    long getTime(final int index) {
+        return times[index];
+    }
+
+    /**
+     * @return the custom event name, null if the action is a launch
+     */
+    String getEventName(final int index) {
+        return eventNames[index];
+    }
+
+    /**
+     * @param promptIndex the number of times the dialog was shown before
+     * @return the response to the dialog, the last recorded response once they run out, RESPONSE_LATER if none
+     */
+    byte getResponse(final int promptIndex) {
+        if (responses.length == 0) {
+            return RESPONSE_LATER;
+        }
+        return responses[promptIndex < responses.length ? promptIndex : responses.length - 1];
+    }
+
+    public static final class Builder {
+
+        private long[] times = new long[16];
+
+        private String[] eventNames = new String[16];
+
+        private int actionsNumber = 0;
+
+        private byte[] responses = new byte[4];
+
+        private int responsesNumber = 0;
+
+        private Builder addAction(final long timeMillis, final String eventName) {
+            if ((actionsNumber > 0) && (timeMillis < times[actionsNumber - 1])) {
+                throw new IllegalArgumentException("The actions must be added in time order");
+            }
+            if (actionsNumber == times.length) {
+                times = Arrays.copyOf(times, actionsNumber * 2);
+                eventNames = Arrays.copyOf(eventNames, actionsNumber * 2);
+            }
+            times[actionsNumber] = timeMillis;
+            eventNames[actionsNumber] = eventName;
+            actionsNumber++;
+            return this;
+        }
+
+        /**
+         * @param timeMillis the milliseconds since the start of the simulation, the first action is the install
+         */
+        @NonNull
+        public Builder launch(final long timeMillis) {
+            return addAction(timeMillis, null);
+        }
+
+        /**
+         * @param timeMillis the milliseconds since the start of the simulation
+         */
+        @NonNull
+        public Builder event(final long timeMillis, @NonNull final String eventName) {
+            return addAction(timeMillis, eventName);
+        }
+
+        /**
+         * Adds the response to the next showing of the dialog.
+         *
+         * @param response RESPONSE_RATE, RESPONSE_LATER or RESPONSE_NEVER
+         */
+        @NonNull
+        public Builder respond(final byte response) {
+            if (responsesNumber == responses.length) {
+                responses = Arrays.copyOf(responses, responsesNumber * 2);
+            }
+            responses[responsesNumber++] = response;
+            return this;
+        }
+
+        @NonNull
+        public UserTimeline build() {
+            return new UserTimeline(this);
+        }
+    }
+}
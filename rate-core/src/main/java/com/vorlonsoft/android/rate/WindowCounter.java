@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Sliding-window counter of the launches or of a custom event: a {@link DayBucketRing} as long as
+ * the window, so increments and window sums are O(1) and the memory doesn't grow with the counts.<br>
+ * Persisted like a {@link RateCounter}: only the first change after a write hands it to the store,
+ * which encodes it when it writes.
+ */
+final class WindowCounter implements KeyValueStore.Encoded {
+
+    private static final String PREF_KEY_WINDOW_PREFIX = "androidrate_window_";
+
+    /**
+     * The event name, null for the launches
+     */
+    private final String eventName;
+
+    private final short days;
+
+    private DayBucketRing ring;
+
+    private final AtomicBoolean isDirty = new AtomicBoolean(false);
+
+    WindowCounter(@Nullable final String eventName, final short days) {
+        this.eventName = eventName;
+        this.days = days;
+        ring = new DayBucketRing(days);
+    }
+
+    /**
+     * @return the storage key of the window of {@code eventName} (null for the launches) and {@code days}
+     */
+    @NonNull
+    static String getKey(@Nullable final String eventName, final short days) {
+        return PREF_KEY_WINDOW_PREFIX + days + (eventName == null ? "_launch_times" : "_event_" + eventName);
+    }
+
+    @NonNull
+    String getKey() {
+        return getKey(eventName, days);
+    }
+
+    boolean isOf(@Nullable final String eventName, final short days) {
+        return (this.days == days) && isOf(eventName);
+    }
+
+    boolean isOf(@Nullable final String eventName) {
+        return eventName == null ? this.eventName == null : eventName.equals(this.eventName);
+    }
+
+    /**
+     * @param encoded the stored value, a malformed or missing one resets the window
+     */
+    synchronized void load(@Nullable final Object encoded) {
+        final DayBucketRing decoded = encoded instanceof String ? DayBucketRing.decode((String) encoded, days) : null;
+        ring = decoded == null ? new DayBucketRing(days) : decoded;
+    }
+
+    synchronized void add(final long day, final int count) {
+        ring.add(day, count);
+    }
+
+    /**
+     * @return the sum of the window ending at {@code day}
+     */
+    synchronized long sum(final long day) {
+        return ring.sum(day);
+    }
+
+    synchronized void clear() {
+        ring.clear();
+    }
+
+    /**
+     * @return true if the window wasn't dirty, i.e. the caller must schedule it for writing
+     */
+    boolean markDirty() {
+        return isDirty.compareAndSet(false, true);
+    }
+
+    @NonNull
+    @Override
+    public synchronized String encode() {
+        isDirty.set(false);
+        return ring.encode();
+    }
+}
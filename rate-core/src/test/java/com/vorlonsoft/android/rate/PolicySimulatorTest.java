@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * Unit test for {@link com.vorlonsoft.android.rate.PolicySimulator}
+ */
+public class PolicySimulatorTest extends TestCase {
+
+    private static PolicySimulator.Policy launchTimesPolicy(final int launchTimes) {
+        return new PolicySimulator.Policy() {
+            @Override
+            public RateEngine createEngine() {
+                return new RateEngine().setLaunchTimes(launchTimes);
+            }
+        };
+    }
+
+    public void testRecordedTimeline() {
+        final UserTimeline.Builder builder = new UserTimeline.Builder().respond(UserTimeline.RESPONSE_LATER).respond(UserTimeline.RESPONSE_RATE);
+        for (int day = 0; day < 30; day++) {
+            builder.launch(day * DAY_IN_MILLIS);
+        }
+        final UserTimeline timeline = builder.build();
+        final SimulationResult result = new PolicySimulator(new PolicySimulator.Timelines() {
+            @Override
+            public int size() {
+                return 1;
+            }
+
+            @Override
+            public UserTimeline get(final int index) {
+                return timeline;
+            }
+        }).simulate(launchTimesPolicy(10));
+        // first shown on the 10th day, later, shown again the next day and rated
+        assertEquals(2L, result.getPromptsNumber());
+        assertEquals(10, result.getFirstPromptDaysPercentile(1.0));
+        assertEquals(1.0, result.getRatedRate());
+    }
+
+    public void testSyntheticTimelinesSweep() {
+        final PolicySimulator simulator = new PolicySimulator(new SyntheticTimelines(20000, 42L).setEvent("event", 0.5));
+        final List<SimulationResult> results = simulator.simulate(Arrays.asList(launchTimesPolicy(5), launchTimesPolicy(50)));
+        assertEquals(20000L, results.get(0).getUsersNumber());
+        assertTrue(results.get(0).getPromptRate() > results.get(1).getPromptRate());
+        assertTrue(results.get(0).getFirstPromptDaysPercentile(0.5) <= results.get(1).getFirstPromptDaysPercentile(0.5));
+        assertEquals(results.get(1).toString(), simulator.simulate(launchTimesPolicy(50)).toString());
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Vorlonsoft LLC
+ *
+ * Licensed under The MIT License (MIT)
+ */
+
+package com.vorlonsoft.android.rate;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.vorlonsoft.android.rate.RateClock.DAY_IN_MILLIS;
+
+/**
+ * Unit test for {@link com.vorlonsoft.android.rate.RateEngine}
+ */
+public class RateEngineTest extends TestCase {
+
+    private static final String EVENT_NAME = "engine_test_event";
+
+    private final TestRateClock clock = new TestRateClock(1500000000000L);
+
+    private final MemoryKeyValueStore store = new MemoryKeyValueStore();
+
+    private boolean shouldShowRateDialog(final RateEngine engine, final RateStorage storage) {
+        return engine.shouldShowRateDialog(storage.getState(), clock.currentTimeMillis());
+    }
+
+    public void testDefaultThresholds() {
+        final RateStorage storage = new RateStorage(store, clock);
+        final RateEngine engine = new RateEngine();
+        storage.setFirstLaunch();
+        for (int i = 1; i < 10; i++) {
+            storage.incrementLaunchTimes();
+        }
+        assertFalse(shouldShowRateDialog(engine, storage));
+        clock.advanceDays(10);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        storage.setRemindInterval();
+        assertFalse(shouldShowRateDialog(engine, storage));
+        clock.advanceDays(1);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        storage.setAgreeShowDialog(false);
+        assertFalse(shouldShowRateDialog(engine, storage));
+    }
+
+    public void testEventAndDialogLaunchTimesThresholds() {
+        final RateStorage storage = new RateStorage(store, clock);
+        final RateEngine engine = new RateEngine()
+                .setInstallDays((byte) 0)
+                .setLaunchTimes((byte) 0)
+                .setMinimumEventCount(EVENT_NAME, (short) 3)
+                .set365DayPeriodMaxNumberDialogLaunchTimes((short) 2);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        assertFalse(shouldShowRateDialog(engine, storage));
+        storage.incrementCustomEventCount(EVENT_NAME);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        storage.increment365DayPeriodDialogLaunchTimes();
+        storage.increment365DayPeriodDialogLaunchTimes();
+        assertFalse(shouldShowRateDialog(engine, storage));
+        clock.advanceDays(365);
+        assertTrue(shouldShowRateDialog(engine, storage));
+    }
+
+    public void testStateIsReloadedFromStore() {
+        final RateStorage storage = new RateStorage(store, clock);
+        storage.setFirstLaunch();
+        storage.incrementLaunchTimes();
+        storage.incrementCustomEventCount(EVENT_NAME);
+        storage.increment365DayPeriodDialogLaunchTimes();
+        storage.setAgreeShowDialog(false);
+
+        final RateState state = new RateStorage(store, clock).getState();
+        assertEquals(2, state.getLaunchTimes());
+        assertEquals(1, state.getCustomEventCount(EVENT_NAME));
+        assertEquals(1L, state.get365DayPeriodDialogLaunchTimes(clock.currentTimeMillis()));
+        assertEquals(clock.currentTimeMillis(), state.getInstallDate());
+        assertFalse(state.isAgreeShowDialog());
+    }
+
+    public void testLegacyDialogLaunchTimesMigration() {
+        // the legacy history counted ":day y year-count:" from the dialog first launch time, 400 days ago
+        store.putLong("androidrate_dialog_first_launch_time", clock.currentTimeMillis() - (400 * DAY_IN_MILLIS));
+        store.putString("androidrate_365_day_period_dialog_launch_times", ":0y0-0:20y0-5:300y0-2:10y1-1:35y1-3:");
+        final RateStorage storage = new RateStorage(store, clock);
+        // 380 days ago is out of the 365-day period, 100 days ago, 25 days ago and today are in;
+        // 270 days later the 100 days ago launches leave it too
+        assertEquals(6L, storage.getState().get365DayPeriodDialogLaunchTimes(clock.currentTimeMillis()));
+        assertFalse(store.getAll().containsKey("androidrate_365_day_period_dialog_launch_times"));
+        assertEquals(6L, new RateStorage(store, clock).getState().get365DayPeriodDialogLaunchTimes(clock.currentTimeMillis()));
+        clock.advanceDays(270);
+        assertEquals(4L, new RateStorage(store, clock).getState().get365DayPeriodDialogLaunchTimes(clock.currentTimeMillis()));
+    }
+
+    public void testWideSaturatingCounters() {
+        store.putInt("androidrate_launch_times", Short.MIN_VALUE);
+        final RateStorage storage = new RateStorage(store, clock);
+        assertEquals(Short.MAX_VALUE + 1, storage.getState().getLaunchTimes());
+        final RateEngine engine = new RateEngine()
+                .setInstallDays((byte) 0)
+                .setLaunchTimes(40000)
+                .setMinimumEventCount(EVENT_NAME, 40000);
+        storage.setCustomEventCount(EVENT_NAME, Integer.MAX_VALUE - 1);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        assertEquals(Integer.MAX_VALUE, storage.getState().getCustomEventCount(EVENT_NAME));
+        assertFalse(shouldShowRateDialog(engine, storage));
+        storage.setLaunchTimes(40000);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        assertEquals(40000, new RateStorage(store, clock).getState().getLaunchTimes());
+    }
+
+    public void testCountsInWindow() {
+        final RateStorage storage = new RateStorage(store, clock);
+        storage.trackEventCountInWindow(EVENT_NAME, (short) 7);
+        final RateEngine engine = new RateEngine()
+                .setInstallDays((byte) 0)
+                .setLaunchTimes((byte) 0)
+                .setMinimumEventCountInWindow(EVENT_NAME, 3, (short) 7);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        clock.advanceDays(3);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        clock.advanceDays(4);
+        assertFalse(shouldShowRateDialog(engine, storage));
+        final RateStorage reloadedStorage = new RateStorage(store, clock);
+        reloadedStorage.trackEventCountInWindow(EVENT_NAME, (short) 7);
+        assertEquals(1L, reloadedStorage.getState().getCustomEventCountInWindow(EVENT_NAME, (short) 7, clock.currentTimeMillis()));
+        assertEquals(3, storage.getState().getCustomEventCount(EVENT_NAME));
+    }
+
+    public void testTransactionIsAppliedOnCommit() {
+        final RateStorage storage = new RateStorage(store, clock);
+        storage.setFirstLaunch();
+        final Map<String, Integer> eventIncrements = new HashMap<>();
+        eventIncrements.put(EVENT_NAME, 5);
+        eventIncrements.put("other_event", 2);
+        final RateTransaction transaction = storage.edit()
+                .incrementEventCount(EVENT_NAME)
+                .incrementEventCounts(eventIncrements)
+                .setEventCountValue("other_event", 7)
+                .incrementLaunchTimes()
+                .setAgreeShowDialog(false);
+        assertEquals(0, storage.getState().getCustomEventCount(EVENT_NAME));
+        transaction.commit();
+
+        final RateState state = new RateStorage(store, clock).getState();
+        assertEquals(6, state.getCustomEventCount(EVENT_NAME));
+        assertEquals(7, state.getCustomEventCount("other_event"));
+        assertEquals(2, state.getLaunchTimes());
+        assertFalse(state.isAgreeShowDialog());
+    }
+
+    public void testTransactionClearsEventsBeforeItsChanges() {
+        final RateStorage storage = new RateStorage(store, clock);
+        storage.trackEventCountInWindow(EVENT_NAME, (short) 7);
+        storage.incrementCustomEventCount(EVENT_NAME);
+        storage.incrementCustomEventCount("other_event");
+        storage.edit()
+                .clearEventCounts()
+                .incrementEventCount(EVENT_NAME)
+                .commit();
+
+        final RateStorage reloadedStorage = new RateStorage(store, clock);
+        reloadedStorage.trackEventCountInWindow(EVENT_NAME, (short) 7);
+        final RateState state = reloadedStorage.getState();
+        assertEquals(1, state.getCustomEventCount(EVENT_NAME));
+        assertEquals(0, state.getCustomEventCount("other_event"));
+        assertEquals(1L, state.getCustomEventCountInWindow(EVENT_NAME, (short) 7, clock.currentTimeMillis()));
+    }
+
+    public void testNamedStoragesShareTheStore() {
+        final RateStorage storage = new RateStorage(store, clock);
+        final RateStorage namedStorage = new RateStorage(store, "account", clock);
+        storage.setFirstLaunch();
+        namedStorage.setFirstLaunch();
+        namedStorage.incrementLaunchTimes();
+        namedStorage.incrementCustomEventCount(EVENT_NAME);
+        storage.setAgreeShowDialog(false);
+        storage.clear();
+
+        final RateState namedState = new RateStorage(store, "account", clock).getState();
+        assertEquals(2, namedState.getLaunchTimes());
+        assertEquals(1, namedState.getCustomEventCount(EVENT_NAME));
+        assertTrue(namedState.isAgreeShowDialog());
+        assertEquals(0, new RateStorage(store, clock).getState().getLaunchTimes());
+    }
+
+    public void testMemoizedDecisionFollowsTimeAndMutations() {
+        final RateStorage storage = new RateStorage(store, clock);
+        final RateEngine engine = new RateEngine().setLaunchTimes((byte) 0);
+        storage.setFirstLaunch();
+        assertFalse(shouldShowRateDialog(engine, storage));
+        clock.advance((10 * DAY_IN_MILLIS) - 1L);
+        assertFalse(shouldShowRateDialog(engine, storage));
+        clock.advance(1L);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        assertTrue(shouldShowRateDialog(engine, storage));
+        storage.setRemindInterval();
+        assertFalse(shouldShowRateDialog(engine, storage));
+        engine.setRemindInterval((byte) 0);
+        assertTrue(shouldShowRateDialog(engine, storage));
+        storage.setAgreeShowDialog(false);
+        assertFalse(shouldShowRateDialog(engine, storage));
+    }
+
+    public void testMillionEvaluations() {
+        final RateStorage storage = new RateStorage(store, clock);
+        final RateEngine engine = new RateEngine();
+        storage.setFirstLaunch();
+        int shownNumber = 0;
+        for (int i = 0; i < 1000000; i++) {
+            storage.incrementLaunchTimes();
+            clock.advance(60000L);
+            if (shouldShowRateDialog(engine, storage)) {
+                shownNumber++;
+            }
+        }
+        // eligible from the 10th day after the install, 1440 launches a day
+        assertEquals(1000000 - ((10 * 1440) - 1), shownNumber);
+    }
+}